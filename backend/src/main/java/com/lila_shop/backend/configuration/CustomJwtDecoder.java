@@ -1,34 +1,47 @@
 package com.lila_shop.backend.configuration;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
-import java.util.Objects;
-import javax.crypto.spec.SecretKeySpec;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
 import org.springframework.stereotype.Component;
 
-import com.lila_shop.backend.dto.request.IntrospectRequest;
+import com.lila_shop.backend.exception.AppException;
 import com.lila_shop.backend.service.AuthenticationService;
 import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.SignedJWT;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @Component
 public class CustomJwtDecoder implements JwtDecoder {
-    @Value("${jwt.signerKey}")
-    private String signerKey;
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private int verifiedCacheMaxSize;
 
     @Autowired
     private AuthenticationService authenticationService;
 
-    private volatile NimbusJwtDecoder nimbusJwtDecoder = null;
+    // sha256(token) -> Jwt đã xác minh chữ ký, tránh HMAC + parse JSON lặp lại cho cùng 1 bearer token
+    private final Map<String, Jwt> verifiedTokens = new ConcurrentHashMap<>();
+
+    // Chuyển đổi claim giống NimbusJwtDecoder (exp/iat/nbf -> Instant, ...)
+    private final Converter<Map<String, Object>, Map<String, Object>> claimSetConverter =
+            MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
 
     @Override
     public Jwt decode(String token) throws JwtException {
@@ -37,60 +50,96 @@ public class CustomJwtDecoder implements JwtDecoder {
             throw new JwtException("Token is null or empty");
         }
 
-        try {
-            // Check token còn hiệu lực không, nếu không -> Exception
-            var response = authenticationService.introspect(
-                    IntrospectRequest.builder().token(token).build());
-
-            if (!response.isValid()) {
-                log.warn(
-                        "Token validation failed: token is invalid (expired or malformed). Token prefix: {}",
-                        token.length() > 20 ? token.substring(0, 20) + "..." : token);
-                throw new JwtException("Token invalid");
+        String cacheKey = hashToken(token);
+        Jwt cached = verifiedTokens.get(cacheKey);
+        if (cached != null) {
+            if (cached.getExpiresAt() != null && cached.getExpiresAt().isAfter(Instant.now())) {
+                try {
+                    // Token đã xác minh chữ ký, chỉ cần kiểm tra thu hồi + trạng thái tài khoản
+                    authenticationService.checkTokenState(cached.getId(), cached.getSubject());
+                    return cached;
+                } catch (AppException e) {
+                    verifiedTokens.remove(cacheKey);
+                    log.warn("Token validation failed: token is revoked or account is locked. Token prefix: {}",
+                            tokenPrefix(token));
+                    throw new JwtException("Token invalid");
+                }
             }
-        } catch (JOSEException | ParseException e) {
+            verifiedTokens.remove(cacheKey);
+        }
+
+        SignedJWT signedJWT;
+        try {
+            // Parse + verify chữ ký đúng 1 lần
+            signedJWT = authenticationService.verifyAccessToken(token);
+        } catch (AppException e) {
             log.warn(
-                    "Token parsing/verification failed: {}. Token prefix: {}",
-                    e.getMessage(),
-                    token.length() > 20 ? token.substring(0, 20) + "..." : token);
+                    "Token validation failed: token is invalid (expired or malformed). Token prefix: {}",
+                    tokenPrefix(token));
+            throw new JwtException("Token invalid");
+        } catch (JOSEException | ParseException e) {
+            log.warn("Token parsing/verification failed: {}. Token prefix: {}", e.getMessage(), tokenPrefix(token));
             throw new JwtException("Token invalid: " + e.getMessage());
-        } catch (JwtException e) {
-            // Re-throw JwtException as-is
-            throw e;
         } catch (Exception e) {
             // Catch any other unexpected exceptions
             log.error(
                     "Unexpected error during token introspection: {}. Token prefix: {}",
                     e.getMessage(),
-                    token.length() > 20 ? token.substring(0, 20) + "..." : token,
+                    tokenPrefix(token),
                     e);
             throw new JwtException("Token validation failed: " + e.getMessage());
         }
 
-        // Nếu token còn hiệu lực
+        // Nếu token còn hiệu lực -> dựng Jwt từ claim đã parse, không decode lại
         try {
-            // Thread-safe lazy initialization using double-checked locking pattern
-            if (Objects.isNull(nimbusJwtDecoder)) {
-                synchronized (this) {
-                    // Double-check after acquiring lock
-                    if (Objects.isNull(nimbusJwtDecoder)) {
-                        SecretKeySpec secretKeySpec = new SecretKeySpec(getSignerKeyBytes(), "HS512");
-                        nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
-                                .macAlgorithm(MacAlgorithm.HS512)
-                                .build();
-                    }
-                }
-            }
-
-            return nimbusJwtDecoder.decode(token);
+            Jwt jwt = toJwt(token, signedJWT);
+            cacheVerifiedToken(cacheKey, jwt);
+            return jwt;
         } catch (Exception e) {
             log.error("Error decoding JWT token: {}", e.getMessage(), e);
             throw new JwtException("Token decode failed: " + e.getMessage());
         }
     }
 
-    private byte[] getSignerKeyBytes() {
-        String sanitized = (signerKey == null) ? "" : signerKey.replaceAll("\\s", ""); // xóa khoảng trắng
-        return sanitized.getBytes();
+    // Dọn các token đã hết hạn khỏi cache
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpiredTokens() {
+        Instant now = Instant.now();
+        verifiedTokens.values().removeIf(jwt -> jwt.getExpiresAt() == null || !jwt.getExpiresAt().isAfter(now));
+    }
+
+    private Jwt toJwt(String token, SignedJWT signedJWT) throws ParseException {
+        Map<String, Object> headers = signedJWT.getHeader().toJSONObject();
+        Map<String, Object> claims =
+                claimSetConverter.convert(signedJWT.getJWTClaimsSet().getClaims());
+
+        return Jwt.withTokenValue(token)
+                .headers(h -> h.putAll(headers))
+                .claims(c -> c.putAll(claims))
+                .build();
+    }
+
+    private void cacheVerifiedToken(String cacheKey, Jwt jwt) {
+        if (verifiedTokens.size() >= verifiedCacheMaxSize) {
+            evictExpiredTokens();
+        }
+        // Cache đầy -> bỏ qua, token vẫn được xác minh bình thường ở lần sau
+        if (verifiedTokens.size() < verifiedCacheMaxSize) {
+            verifiedTokens.put(cacheKey, jwt);
+        }
+    }
+
+    private String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private String tokenPrefix(String token) {
+        return token.length() > 20 ? token.substring(0, 20) + "..." : token;
     }
 }
@@ -0,0 +1,58 @@
+package com.lila_shop.backend.configuration;
+
+import com.lila_shop.backend.service.CatalogVersionTracker;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.security.Principal;
+
+/**
+ * Conditional GET cho catalog: ETag/Last-Modified lấy từ CatalogVersionTracker.
+ * Nếu If-None-Match/If-Modified-Since còn khớp thì trả 304 ngay, không chạy controller.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class HttpCacheConfig implements WebMvcConfigurer {
+
+    private final CatalogVersionTracker catalogVersionTracker;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ConditionalGetInterceptor(CatalogVersionTracker.Area.PRODUCT))
+                .addPathPatterns("/products", "/products/**");
+        registry.addInterceptor(new ConditionalGetInterceptor(CatalogVersionTracker.Area.CATEGORY))
+                .addPathPatterns("/categories", "/categories/**");
+        registry.addInterceptor(new ConditionalGetInterceptor(CatalogVersionTracker.Area.BANNER))
+                .addPathPatterns("/banners", "/banners/**");
+    }
+
+    @RequiredArgsConstructor
+    private class ConditionalGetInterceptor implements HandlerInterceptor {
+        private final CatalogVersionTracker.Area area;
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            if (!"GET".equals(request.getMethod())) {
+                return true;
+            }
+
+            // Trình duyệt luôn hỏi lại server (no-cache) nhưng chỉ tốn 1 lần so ETag;
+            // private + Vary để không dùng lẫn response giữa các tài khoản
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.AUTHORIZATION);
+
+            Principal principal = request.getUserPrincipal();
+            String etag = catalogVersionTracker.etag(area, principal != null ? principal.getName() : null);
+            ServletWebRequest webRequest = new ServletWebRequest(request, response);
+            return !webRequest.checkNotModified(etag, catalogVersionTracker.lastModified(area));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.lila_shop.backend.configuration;
+
+import com.lila_shop.backend.repository.ProductRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class QuantitySoldInitConfig {
+
+    ProductRepository productRepository;
+
+    // Gán 0 cho quantity_sold NULL rồi đặt cột NOT NULL DEFAULT 0, để keyset "bán chạy" so sánh trên cột gốc
+    @Bean
+    @ConditionalOnProperty(
+            prefix = "spring",
+            value = "datasource.driverClassName",
+            havingValue = "com.mysql.cj.jdbc.Driver")
+    ApplicationRunner quantitySoldInitializer() {
+        return args -> {
+            try {
+                int updated = productRepository.backfillQuantitySold();
+                if (updated > 0) {
+                    log.info("Backfilled quantity_sold = 0 for {} products", updated);
+                }
+                if (productRepository.countNullableQuantitySoldColumns() > 0) {
+                    productRepository.makeQuantitySoldNotNull();
+                    log.info("Column products.quantity_sold is now NOT NULL DEFAULT 0");
+                }
+            } catch (Exception e) {
+                log.error("Cannot backfill quantity_sold: {}", e.getMessage(), e);
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package com.lila_shop.backend.configuration;
+
+import com.lila_shop.backend.repository.ProductRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ReviewAggregateInitConfig {
+
+    ProductRepository productRepository;
+
+    // Tính tổng hợp đánh giá cho các sản phẩm tạo trước khi có cột review_count
+    @Bean
+    @ConditionalOnProperty(
+            prefix = "spring",
+            value = "datasource.driverClassName",
+            havingValue = "com.mysql.cj.jdbc.Driver")
+    ApplicationRunner reviewAggregateInitializer() {
+        return args -> {
+            try {
+                int updated = productRepository.backfillReviewAggregates();
+                if (updated > 0) {
+                    log.info("Backfilled review aggregates for {} products", updated);
+                }
+            } catch (Exception e) {
+                log.error("Cannot backfill review aggregates: {}", e.getMessage(), e);
+            }
+        };
+    }
+}
@@ -1,6 +1,8 @@
 package com.lila_shop.backend.controller;
 
 import com.lila_shop.backend.dto.request.ApiResponse;
+import com.lila_shop.backend.dto.request.CartQuoteRequest;
+import com.lila_shop.backend.dto.response.CartQuoteResponse;
 import com.lila_shop.backend.dto.response.CartResponse;
 import com.lila_shop.backend.mapper.CartMapper;
 import com.lila_shop.backend.service.CartService;
@@ -76,4 +78,13 @@ public class CartController {
                 .result(cartMapper.toResponse(cart))
                 .build();
     }
+
+    // Xem trước tổng tiền khi checkout, không thay đổi giỏ hàng
+    @PostMapping("/quote")
+    @PreAuthorize("hasRole('CUSTOMER')")
+    ApiResponse<CartQuoteResponse> quote(@RequestBody CartQuoteRequest request) {
+        return ApiResponse.<CartQuoteResponse>builder()
+                .result(cartService.quote(request))
+                .build();
+    }
 }
@@ -15,8 +15,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -63,11 +66,11 @@ public class OrderController {
 
     @GetMapping
     @PreAuthorize("hasAnyRole('STAFF','ADMIN')")
-    public ApiResponse<List<OrderResponse>> getAllOrders() {
-        List<Order> orders = orderService.getAllOrders();
-        return ApiResponse.<List<OrderResponse>>builder()
-                .result(orders.stream().map(this::toResponse).toList())
-                .build();
+    public ResponseEntity<StreamingResponseBody> getAllOrders() {
+        // Cùng dạng {"code":1000,"result":[...]} nhưng ghi theo lô thay vì dựng cả List
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(orderService.streamAllOrders(this::toResponse));
     }
 
     @GetMapping("/statistics")
@@ -2,14 +2,22 @@ package com.lila_shop.backend.controller;
 
 import com.lila_shop.backend.dto.request.ApiResponse;
 import com.lila_shop.backend.dto.request.*;
+import com.lila_shop.backend.dto.response.ProductFacetResponse;
+import com.lila_shop.backend.dto.response.ProductListPageResponse;
+import com.lila_shop.backend.dto.response.ProductPageResponse;
 import com.lila_shop.backend.dto.response.ProductResponse;
+import com.lila_shop.backend.dto.response.ProductSuggestionResponse;
+import com.lila_shop.backend.enums.ProductSortOrder;
 import com.lila_shop.backend.service.ProductService;
 import jakarta.validation.Valid;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -37,10 +45,10 @@ public class ProductController {
 
     // ========== READ ENDPOINTS ==========
     @GetMapping
-    ApiResponse<List<ProductResponse>> getAllProducts() {
-        return ApiResponse.<List<ProductResponse>>builder()
-                .result(productService.getAllProducts())
-                .build();
+    ResponseEntity<StreamingResponseBody> getAllProducts() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(productService.streamAllProducts());
     }
 
     @GetMapping("/active")
@@ -50,6 +58,27 @@ public class ProductController {
                 .build();
     }
 
+    // Phân trang keyset: truyền nextCursor của trang trước để lấy trang tiếp theo
+    @GetMapping("/page")
+    ApiResponse<ProductPageResponse> getProductsPage(
+            @RequestParam(required = false) ProductSortOrder sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ApiResponse.<ProductPageResponse>builder()
+                .result(productService.getProductsPage(sort, cursor, size))
+                .build();
+    }
+
+    @GetMapping("/active/page")
+    ApiResponse<ProductPageResponse> getActiveProductsPage(
+            @RequestParam(required = false) ProductSortOrder sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ApiResponse.<ProductPageResponse>builder()
+                .result(productService.getActiveProductsPage(sort, cursor, size))
+                .build();
+    }
+
     @GetMapping("/{productId}")
     ApiResponse<ProductResponse> getProductById(@PathVariable String productId) {
         return ApiResponse.<ProductResponse>builder()
@@ -78,6 +107,17 @@ public class ProductController {
                 .build();
     }
 
+    // Bao gồm sản phẩm của các danh mục con, vd: /products/category/CAT_SKINCARE/page?page=0&size=20
+    @GetMapping("/category/{categoryId}/page")
+    ApiResponse<ProductListPageResponse> getProductsByCategoryPage(
+            @PathVariable String categoryId,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
+        return ApiResponse.<ProductListPageResponse>builder()
+                .result(productService.getProductsByCategoryPage(categoryId, page, size))
+                .build();
+    }
+
     @GetMapping("/search")
     ApiResponse<List<ProductResponse>> searchProducts(@RequestParam String keyword) {
         return ApiResponse.<List<ProductResponse>>builder()
@@ -85,6 +125,43 @@ public class ProductController {
                 .build();
     }
 
+    // "Thường được mua cùng" cho trang chi tiết sản phẩm
+    @GetMapping("/{productId}/bought-together")
+    ApiResponse<List<ProductResponse>> getBoughtTogether(
+            @PathVariable String productId, @RequestParam(defaultValue = "10") int limit) {
+        return ApiResponse.<List<ProductResponse>>builder()
+                .result(productService.getBoughtTogether(productId, limit))
+                .build();
+    }
+
+    // Bán chạy nhất, toàn catalog hoặc theo danh mục (gồm danh mục con), vd: /products/best-sellers?categoryId=CAT_SKINCARE
+    @GetMapping("/best-sellers")
+    ApiResponse<ProductListPageResponse> getBestSellers(
+            @RequestParam(required = false) String categoryId,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
+        return ApiResponse.<ProductListPageResponse>builder()
+                .result(productService.getBestSellers(categoryId, page, size))
+                .build();
+    }
+
+    // Gợi ý cho ô tìm kiếm (sản phẩm, thương hiệu, danh mục), gọi theo từng phím gõ, vd: /products/suggest?q=kem chong
+    @GetMapping("/suggest")
+    ApiResponse<List<ProductSuggestionResponse>> suggest(
+            @RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return ApiResponse.<List<ProductSuggestionResponse>>builder()
+                .result(productService.suggest(q, limit))
+                .build();
+    }
+
+    // Lọc catalog theo nhiều thuộc tính, vd: /products/filter?brand=A&brand=B&skinType=Da dầu&minPrice=100000
+    @GetMapping("/filter")
+    ApiResponse<ProductFacetResponse> filterProducts(@ModelAttribute ProductFacetFilterRequest request) {
+        return ApiResponse.<ProductFacetResponse>builder()
+                .result(productService.filterProducts(request))
+                .build();
+    }
+
     @GetMapping("/price-range")
     ApiResponse<List<ProductResponse>> getProductsByPriceRange(
             @RequestParam Double minPrice, @RequestParam Double maxPrice) {
@@ -48,6 +48,16 @@ public class ProductVariantController {
                                 .build();
         }
 
+        @PutMapping("/{variantId}/hot-stock")
+        ApiResponse<ProductVariantResponse> setHotStock(
+                        @PathVariable String productId,
+                        @PathVariable String variantId,
+                        @RequestParam boolean enabled) {
+                return ApiResponse.<ProductVariantResponse>builder()
+                                .result(productVariantService.setHotStock(productId, variantId, enabled))
+                                .build();
+        }
+
         @DeleteMapping("/{variantId}")
         ApiResponse<String> deleteVariant(
                         @PathVariable String productId,
@@ -10,7 +10,10 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -45,10 +48,10 @@ public class ReviewController {
     }
 
     @GetMapping("/all-reviews")
-    ApiResponse<List<ReviewResponse>> getAllReviews() {
-        return ApiResponse.<List<ReviewResponse>>builder()
-                .result(reviewService.getAllReviews())
-                .build();
+    ResponseEntity<StreamingResponseBody> getAllReviews() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(reviewService.getAllReviews());
     }
 
     @PostMapping
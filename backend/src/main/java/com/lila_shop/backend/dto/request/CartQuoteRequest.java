@@ -0,0 +1,24 @@
+package com.lila_shop.backend.dto.request;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CartQuoteRequest {
+
+    // Các CartItem đang được chọn. Null hoặc rỗng = toàn bộ giỏ hàng (giống khi checkout).
+    List<String> cartItemIds;
+
+    // Mã voucher muốn thử. Null = dùng voucher đang áp dụng trong giỏ (nếu có).
+    String voucherCode;
+
+    // Phí vận chuyển (VND) đã báo giá từ GHN. Nếu null sẽ mặc định 0.
+    Double shippingFee;
+}
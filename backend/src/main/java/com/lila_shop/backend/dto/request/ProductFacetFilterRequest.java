@@ -0,0 +1,26 @@
+package com.lila_shop.backend.dto.request;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+// Bộ lọc catalog: cùng thuộc tính là OR, khác thuộc tính là AND
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductFacetFilterRequest {
+    List<String> brand;
+    List<String> skinType;
+    List<String> skinConcern;
+    List<String> origin;
+    List<String> categoryId;
+    Double minPrice;
+    Double maxPrice;
+    Integer page;
+    Integer size;
+}
@@ -0,0 +1,31 @@
+package com.lila_shop.backend.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CartQuoteResponse {
+    // Tổng tiền các dòng được chọn, theo giá hiện hành
+    Double subtotal;
+
+    // Voucher được áp dụng trong báo giá này; null nếu không có hoặc không hợp lệ
+    String appliedVoucherCode;
+    Double voucherDiscount;
+
+    // Lý do voucher không áp dụng được (hiển thị cho khách), null nếu hợp lệ
+    String voucherMessage;
+
+    Double shippingFee;
+
+    // subtotal - voucherDiscount + shippingFee
+    Double totalAmount;
+
+    List<CartItemResponse> items;
+}
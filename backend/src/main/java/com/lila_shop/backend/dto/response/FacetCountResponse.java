@@ -0,0 +1,16 @@
+package com.lila_shop.backend.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FacetCountResponse {
+    // Giá trị dùng để lọc
+    String value;
+    // Số sản phẩm khớp nếu chọn thêm giá trị này
+    Integer count;
+}
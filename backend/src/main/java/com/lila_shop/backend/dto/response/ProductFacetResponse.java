@@ -0,0 +1,30 @@
+package com.lila_shop.backend.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductFacetResponse {
+    // Sản phẩm trong trang hiện tại
+    List<ProductResponse> products;
+
+    // Tổng số sản phẩm khớp bộ lọc
+    Integer totalElements;
+
+    // Trang hiện tại (0-based)
+    Integer currentPage;
+
+    // Số phần tử mỗi trang
+    Integer pageSize;
+
+    // Số lượng theo từng giá trị của mỗi thuộc tính (brand, skinType, ...)
+    Map<String, List<FacetCountResponse>> facets;
+}
@@ -0,0 +1,29 @@
+package com.lila_shop.backend.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductPageResponse {
+    // Danh sách sản phẩm trong trang hiện tại
+    List<ProductResponse> products;
+
+    // Cursor để lấy trang tiếp theo (null nếu là trang cuối)
+    String nextCursor;
+
+    // Kiểu sắp xếp đang dùng
+    String sort;
+
+    // Số phần tử mỗi trang
+    Integer pageSize;
+
+    // Có trang tiếp theo không
+    Boolean hasNext;
+}
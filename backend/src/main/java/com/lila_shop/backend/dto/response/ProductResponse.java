@@ -73,6 +73,7 @@ public class ProductResponse {
     // Review info
     Integer reviewCount;
     Double averageRating;
+    List<Integer> ratingDistribution;
 
     // Inventory info
     Integer stockQuantity;
@@ -0,0 +1,24 @@
+package com.lila_shop.backend.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductSuggestionResponse {
+    // PRODUCT, BRAND hoặc CATEGORY
+    String type;
+
+    // productId / categoryId; null với BRAND
+    String id;
+
+    // Tên hiển thị (giữ nguyên dấu)
+    String name;
+
+    // Lượt bán dùng để xếp hạng (BRAND/CATEGORY: tổng của các sản phẩm)
+    Long quantitySold;
+}
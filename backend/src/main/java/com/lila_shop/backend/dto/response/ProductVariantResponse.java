@@ -21,6 +21,8 @@ public class ProductVariantResponse {
     Double purchasePrice; 
     Integer stockQuantity;
     Boolean isDefault;
+    // Đang bật chế độ flash sale (tồn kho giữ trong bộ nhớ)
+    Boolean hotStock;
     LocalDateTime createdAt;
     LocalDateTime updatedAt;
 }
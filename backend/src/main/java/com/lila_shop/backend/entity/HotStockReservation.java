@@ -0,0 +1,51 @@
+package com.lila_shop.backend.entity;
+
+import com.lila_shop.backend.enums.HotStockReservationStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+// Sổ ghi các phần tồn kho của variant flash sale đã bị trừ trong bộ nhớ nhưng chưa trừ trong DB.
+// Tồn kho thực = product_variants.stock_quantity - tổng các dòng ở đây; dòng COMMITTED bị xóa
+// trong cùng transaction với lúc trừ vào stock_quantity nên khởi động lại vẫn tính đúng.
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+        name = "hot_stock_reservations",
+        indexes = {
+            @Index(name = "idx_hot_stock_reservations_status_variant", columnList = "status, variant_id"),
+            @Index(name = "idx_hot_stock_reservations_hold_key", columnList = "hold_key")
+        })
+public class HotStockReservation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    String id;
+
+    @Column(name = "variant_id", nullable = false)
+    String variantId;
+
+    // Mã đơn hàng MoMo mà phần giữ hàng thuộc về (null với đơn COD)
+    @Column(name = "hold_key")
+    String holdKey;
+
+    @Column(nullable = false)
+    Integer quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    HotStockReservationStatus status;
+
+    // Hạn giữ hàng (chỉ với HELD)
+    @Column(name = "expires_at")
+    LocalDateTime expiresAt;
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt;
+}
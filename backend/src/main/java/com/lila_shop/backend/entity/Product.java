@@ -4,6 +4,8 @@ import com.lila_shop.backend.enums.ProductStatus;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -18,7 +20,16 @@ import java.util.Set;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
-@Table(name = "products")
+// Chỉ ghi các cột thay đổi, tránh ghi đè review_count/rating_* được cập nhật bằng bulk UPDATE
+@DynamicUpdate
+@Table(
+        name = "products",
+        indexes = {
+            // Phục vụ phân trang keyset theo từng kiểu sắp xếp
+            @Index(name = "idx_products_status_created_at", columnList = "status, created_at, id"),
+            @Index(name = "idx_products_status_price", columnList = "status, price, id"),
+            @Index(name = "idx_products_status_quantity_sold", columnList = "status, quantity_sold, id")
+        })
 public class Product {
     @Id
     String id;
@@ -86,8 +97,32 @@ public class Product {
     @Column(name = "price", nullable = false)
     Double price;
 
-    @Column(name = "quantity_sold")
-    Integer quantitySold;
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(name = "quantity_sold", nullable = false)
+    Integer quantitySold = 0;
+
+    // Tổng hợp đánh giá, cập nhật nguyên tử khi tạo/xóa review (tránh load toàn bộ reviews)
+    @Column(name = "review_count")
+    Integer reviewCount;
+
+    @Column(name = "rating_sum")
+    Long ratingSum;
+
+    @Column(name = "rating_1_count")
+    Integer rating1Count;
+
+    @Column(name = "rating_2_count")
+    Integer rating2Count;
+
+    @Column(name = "rating_3_count")
+    Integer rating3Count;
+
+    @Column(name = "rating_4_count")
+    Integer rating4Count;
+
+    @Column(name = "rating_5_count")
+    Integer rating5Count;
 
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
@@ -51,6 +51,10 @@ public class ProductVariant {
     @Column(name = "is_default")
     Boolean isDefault;
 
+    // Chế độ flash sale: tồn kho giữ trong bộ nhớ (FlashSaleInventory), DB được ghi trừ theo lô
+    @Column(name = "hot_stock")
+    Boolean hotStock;
+
     @Column(name = "created_at")
     LocalDateTime createdAt;
 
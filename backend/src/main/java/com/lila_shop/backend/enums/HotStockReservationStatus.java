@@ -0,0 +1,6 @@
+package com.lila_shop.backend.enums;
+
+public enum HotStockReservationStatus {
+    HELD, // giữ hàng cho checkout MoMo đang chờ thanh toán, có hạn
+    COMMITTED // đã thành đơn hàng, chờ ghi trừ vào product_variants.stock_quantity
+}
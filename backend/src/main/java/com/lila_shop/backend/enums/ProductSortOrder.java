@@ -0,0 +1,9 @@
+package com.lila_shop.backend.enums;
+
+// Thứ tự sắp xếp cho danh sách sản phẩm phân trang theo keyset (cursor)
+public enum ProductSortOrder {
+    NEWEST, // createdAt DESC
+    PRICE_ASC, // price ASC
+    PRICE_DESC, // price DESC
+    BEST_SELLING // quantitySold DESC
+}
@@ -0,0 +1,11 @@
+package com.lila_shop.backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Phát ra khi banner được tạo/cập nhật/đổi thứ tự/xóa
+@Getter
+@AllArgsConstructor
+public class BannerChangedEvent {
+    private final String bannerId;
+}
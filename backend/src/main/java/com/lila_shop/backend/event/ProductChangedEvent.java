@@ -0,0 +1,11 @@
+package com.lila_shop.backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Phát ra khi sản phẩm được tạo/cập nhật/duyệt/xóa, các index trong bộ nhớ lắng nghe để cập nhật
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+    private final String productId;
+}
@@ -0,0 +1,11 @@
+package com.lila_shop.backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Phát ra khi promotion được tạo/duyệt/cập nhật/xóa/kích hoạt/hết hạn, ActivePromotionIndex lắng nghe để build lại
+@Getter
+@AllArgsConstructor
+public class PromotionChangedEvent {
+    private final String promotionId;
+}
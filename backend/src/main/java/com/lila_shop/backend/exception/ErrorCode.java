@@ -22,6 +22,7 @@ public enum ErrorCode {
     EMAIL_SEND_FAILED(1009, "Failed to send email", HttpStatus.INTERNAL_SERVER_ERROR),
     INVALID_OTP(1010, "Mã OTP không đúng, yêu cầu nhập lại", HttpStatus.BAD_REQUEST),
     TICKET_NOT_EXISTED(1011, "Ticket không tồn tại", HttpStatus.NOT_FOUND),
+    SERVER_BUSY(1012, "Hệ thống đang quá tải, vui lòng thử lại sau", HttpStatus.SERVICE_UNAVAILABLE),
 
     // Promotion
     PROMOTION_NOT_EXISTED(2001, "Khuyến mãi không tồn tại", HttpStatus.NOT_FOUND),
@@ -7,8 +7,8 @@ import com.lila_shop.backend.dto.response.ProductVariantResponse;
 import com.lila_shop.backend.entity.Product;
 import com.lila_shop.backend.entity.ProductMedia;
 import com.lila_shop.backend.entity.Promotion;
-import com.lila_shop.backend.entity.Review;
 import com.lila_shop.backend.entity.ProductVariant;
+import org.mapstruct.InheritConfiguration;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
@@ -32,13 +32,23 @@ public interface ProductMapper {
     @Mapping(target = "promotionExpiryDate", source = "promotion", qualifiedByName = "mapPromotionExpiryDate")
     @Mapping(target = "mediaUrls", source = "mediaList", qualifiedByName = "mapMediaUrls")
     @Mapping(target = "defaultMediaUrl", source = "defaultMedia", qualifiedByName = "mapDefaultMediaUrl")
-    @Mapping(target = "reviewCount", source = "reviews", qualifiedByName = "mapReviewCount")
-    @Mapping(target = "averageRating", source = "reviews", qualifiedByName = "mapAverageRating")
+    @Mapping(target = "reviewCount", source = "product", qualifiedByName = "mapReviewCount")
+    @Mapping(target = "averageRating", source = "product", qualifiedByName = "mapAverageRating")
+    @Mapping(target = "ratingDistribution", source = "product", qualifiedByName = "mapRatingDistribution")
     @Mapping(target = "stockQuantity", source = "inventory.stockQuantity")
     @Mapping(target = "variants", source = "variants", qualifiedByName = "mapVariants")
     @Mapping(target = "defaultVariantId", source = "variants", qualifiedByName = "mapDefaultVariantId")
     ProductResponse toResponse(Product product);
 
+    // Dùng cho danh sách: các trường từ collection/user được ProductResponseAssembler điền theo lô
+    @InheritConfiguration(name = "toResponse")
+    @Mapping(target = "submittedByName", ignore = true)
+    @Mapping(target = "approvedByName", ignore = true)
+    @Mapping(target = "mediaUrls", ignore = true)
+    @Mapping(target = "variants", ignore = true)
+    @Mapping(target = "defaultVariantId", ignore = true)
+    ProductResponse toListResponse(Product product);
+
     // Request to Entity
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
@@ -58,6 +68,13 @@ public interface ProductMapper {
     @Mapping(target = "variants", ignore = true)
     @Mapping(target = "vouchers", ignore = true)
     @Mapping(target = "status", ignore = true)
+    @Mapping(target = "reviewCount", ignore = true)
+    @Mapping(target = "ratingSum", ignore = true)
+    @Mapping(target = "rating1Count", ignore = true)
+    @Mapping(target = "rating2Count", ignore = true)
+    @Mapping(target = "rating3Count", ignore = true)
+    @Mapping(target = "rating4Count", ignore = true)
+    @Mapping(target = "rating5Count", ignore = true)
     Product toProduct(ProductCreationRequest request);
 
     // Update Entity
@@ -84,6 +101,13 @@ public interface ProductMapper {
     @Mapping(target = "rejectionReason", ignore = true)
     @Mapping(target = "variants", ignore = true)
     @Mapping(target = "vouchers", ignore = true)
+    @Mapping(target = "reviewCount", ignore = true)
+    @Mapping(target = "ratingSum", ignore = true)
+    @Mapping(target = "rating1Count", ignore = true)
+    @Mapping(target = "rating2Count", ignore = true)
+    @Mapping(target = "rating3Count", ignore = true)
+    @Mapping(target = "rating4Count", ignore = true)
+    @Mapping(target = "rating5Count", ignore = true)
     void updateProduct(@MappingTarget Product product, ProductUpdateRequest request);
 
     @Named("mapMediaUrls")
@@ -97,16 +121,30 @@ public interface ProductMapper {
                 .toList();
     }
 
+    // Đọc từ các cột tổng hợp trên product, không load collection reviews
     @Named("mapReviewCount")
-    default Integer mapReviewCount(List<Review> reviews) {
-        return reviews != null ? reviews.size() : 0;
+    default Integer mapReviewCount(Product product) {
+        return product.getReviewCount() != null ? product.getReviewCount() : 0;
     }
 
     @Named("mapAverageRating")
-    default Double mapAverageRating(List<Review> reviews) {
-        if (reviews == null || reviews.isEmpty())
+    default Double mapAverageRating(Product product) {
+        Integer count = product.getReviewCount();
+        Long sum = product.getRatingSum();
+        if (count == null || count <= 0 || sum == null)
             return 0.0;
-        return reviews.stream().mapToDouble(Review::getRating).average().orElse(0.0);
+        return (double) sum / count;
+    }
+
+    // Số review theo từng mức sao, index 0 = 1 sao ... index 4 = 5 sao
+    @Named("mapRatingDistribution")
+    default List<Integer> mapRatingDistribution(Product product) {
+        return java.util.Arrays.asList(
+                product.getRating1Count() != null ? product.getRating1Count() : 0,
+                product.getRating2Count() != null ? product.getRating2Count() : 0,
+                product.getRating3Count() != null ? product.getRating3Count() : 0,
+                product.getRating4Count() != null ? product.getRating4Count() : 0,
+                product.getRating5Count() != null ? product.getRating5Count() : 0);
     }
 
     @Named("mapVariants")
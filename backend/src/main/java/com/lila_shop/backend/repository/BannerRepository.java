@@ -1,8 +1,10 @@
 package com.lila_shop.backend.repository;
 
 import com.lila_shop.backend.entity.Banner;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,6 +15,11 @@ public interface BannerRepository extends JpaRepository<Banner, String> {
 
     List<Banner> findByStatusOrderByOrderIndexAsc(boolean status);
 
+    // Load kèm products/createdBy để map BannerResponse không cần lazy load (dùng khi build ActiveBannerCache)
+    @EntityGraph(attributePaths = { "products", "createdBy" })
+    @Query("SELECT b FROM Banner b WHERE b.status = :status ORDER BY b.orderIndex ASC")
+    List<Banner> findWithProductsByStatus(@Param("status") boolean status);
+
     @Query("SELECT COALESCE(MAX(b.orderIndex), 0) FROM Banner b")
     Integer findMaxOrderIndex();
 }
@@ -22,6 +22,14 @@ public interface CategoryRepository extends JpaRepository<Category, String> {
 
     List<Category> findByStatus(Boolean status);
 
+    // [id, parentId] của toàn bộ danh mục, dùng để dựng cây trong CategoryTreeCache
+    @Query("SELECT c.id, p.id FROM Category c LEFT JOIN c.parentCategory p")
+    List<Object[]> findAllIdAndParentId();
+
+    // [id, name] của danh mục đang hoạt động, dùng cho index gợi ý tìm kiếm
+    @Query("SELECT c.id, c.name FROM Category c WHERE c.status = true")
+    List<Object[]> findActiveIdAndName();
+
     // Search
     @Query("SELECT c FROM Category c WHERE c.name LIKE %:keyword% OR c.description LIKE %:keyword%")
     List<Category> findByKeyword(@Param("keyword") String keyword);
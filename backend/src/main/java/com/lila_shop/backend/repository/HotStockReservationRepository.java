@@ -0,0 +1,64 @@
+package com.lila_shop.backend.repository;
+
+import com.lila_shop.backend.entity.HotStockReservation;
+import com.lila_shop.backend.enums.HotStockReservationStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface HotStockReservationRepository extends JpaRepository<HotStockReservation, String> {
+
+    // Lô dòng COMMITTED cần ghi vào DB; khóa dòng để 2 lần ghi đồng thời không trừ trùng
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM HotStockReservation r WHERE r.status = :status ORDER BY r.createdAt, r.id")
+    List<HotStockReservation> findBatchForUpdate(@Param("status") HotStockReservationStatus status, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM HotStockReservation r WHERE r.status = :status AND r.variantId = :variantId")
+    List<HotStockReservation> findByStatusAndVariantIdForUpdate(
+            @Param("status") HotStockReservationStatus status, @Param("variantId") String variantId);
+
+    @Query("SELECT COALESCE(SUM(r.quantity), 0) FROM HotStockReservation r WHERE r.variantId = :variantId")
+    long sumQuantityByVariantId(@Param("variantId") String variantId);
+
+    List<HotStockReservation> findByStatusAndVariantIdIn(
+            HotStockReservationStatus status, Collection<String> variantIds);
+
+    // Checkout MoMo đã thanh toán: chuyển phần đang giữ thành đơn hàng với số lượng thực tế
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE HotStockReservation r SET r.status = com.lila_shop.backend.enums.HotStockReservationStatus.COMMITTED, "
+            + "r.quantity = :quantity, r.expiresAt = NULL "
+            + "WHERE r.holdKey = :holdKey AND r.variantId = :variantId "
+            + "AND r.status = com.lila_shop.backend.enums.HotStockReservationStatus.HELD")
+    int commitHold(
+            @Param("holdKey") String holdKey, @Param("variantId") String variantId, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("DELETE FROM HotStockReservation r WHERE r.holdKey = :holdKey AND r.variantId = :variantId "
+            + "AND r.status = com.lila_shop.backend.enums.HotStockReservationStatus.HELD")
+    int deleteHold(@Param("holdKey") String holdKey, @Param("variantId") String variantId);
+
+    @Modifying
+    @Query("DELETE FROM HotStockReservation r WHERE r.variantId = :variantId "
+            + "AND r.status = com.lila_shop.backend.enums.HotStockReservationStatus.HELD")
+    int deleteHoldsByVariantId(@Param("variantId") String variantId);
+
+    @Modifying
+    @Query("DELETE FROM HotStockReservation r WHERE r.expiresAt <= :now "
+            + "AND r.status = com.lila_shop.backend.enums.HotStockReservationStatus.HELD")
+    int deleteExpiredHolds(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM HotStockReservation r WHERE r.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<String> ids);
+}
@@ -9,6 +9,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
+import java.util.List;
 
 // Lưu trữ token hết hạn
 @Repository
@@ -21,4 +22,22 @@ public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedTok
                     "INSERT INTO invalidated_token (id, expiry_time) VALUES (:id, :expiryTime) ON DUPLICATE KEY UPDATE expiry_time = :expiryTime",
             nativeQuery = true)
     void saveOrUpdate(@Param("id") String id, @Param("expiryTime") Date expiryTime);
+
+    List<InvalidatedToken> findAllByExpiryTimeAfter(Date time);
+
+    // Xóa theo lô để không giữ lock lâu trên bảng
+    @Modifying
+    @Transactional
+    @Query(
+            value = "DELETE FROM invalidated_token WHERE expiry_time < :cutoff LIMIT :batchSize",
+            nativeQuery = true)
+    int deleteExpiredBatch(@Param("cutoff") Date cutoff, @Param("batchSize") int batchSize);
+
+    // MySQL named lock, đảm bảo chỉ 1 node chạy job dọn dẹp tại 1 thời điểm.
+    // Lock gắn với connection nên phải gọi trong cùng 1 transaction.
+    @Query(value = "SELECT GET_LOCK(:name, 0)", nativeQuery = true)
+    Integer tryAcquireLock(@Param("name") String name);
+
+    @Query(value = "SELECT RELEASE_LOCK(:name)", nativeQuery = true)
+    Integer releaseLock(@Param("name") String name);
 }
@@ -2,9 +2,12 @@ package com.lila_shop.backend.repository;
 
 import com.lila_shop.backend.entity.Inventory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,4 +28,14 @@ public interface InventoryRepository extends JpaRepository<Inventory, String> {
     // Đếm tổng số lượng tồn kho
     @Query("SELECT SUM(i.stockQuantity) FROM Inventory i")
     Long getTotalStockQuantity();
+
+    // Trừ tồn kho nguyên tử khi đặt hàng, chỉ khi còn đủ hàng; trả về 0 = không đủ hàng
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Inventory i SET i.stockQuantity = i.stockQuantity - :quantity, i.lastUpdated = :today "
+            + "WHERE i.product.id = :productId AND i.stockQuantity >= :quantity")
+    int decrementStock(
+            @Param("productId") String productId, @Param("quantity") int quantity, @Param("today") LocalDate today);
+
+    @Query("SELECT i.stockQuantity FROM Inventory i WHERE i.product.id = :productId")
+    Integer findStockQuantityByProductId(@Param("productId") String productId);
 }
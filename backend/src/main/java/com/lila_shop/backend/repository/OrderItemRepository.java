@@ -1,11 +1,24 @@
 package com.lila_shop.backend.repository;
 
 import com.lila_shop.backend.entity.OrderItem;
+import com.lila_shop.backend.enums.OrderStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.stream.Stream;
+
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, String> {
-}
-
 
+    // [orderId, productId] sắp theo đơn hàng, đọc dần bằng cursor để dựng ma trận mua kèm; phải gọi trong transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT oi.order.id, oi.product.id FROM OrderItem oi "
+            + "WHERE oi.product IS NOT NULL AND oi.order.status NOT IN :excludedStatuses ORDER BY oi.order.id")
+    Stream<Object[]> streamOrderProductPairs(@Param("excludedStatuses") Collection<OrderStatus> excludedStatuses);
+}
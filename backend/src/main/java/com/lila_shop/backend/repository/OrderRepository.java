@@ -8,11 +8,15 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface OrderRepository extends JpaRepository<Order, String> {
 
@@ -72,6 +76,15 @@ public interface OrderRepository extends JpaRepository<Order, String> {
         @Query("SELECT o FROM Order o WHERE o.status IN :statuses ORDER BY o.orderDateTime DESC")
         List<Order> findByStatusIn(@Param("statuses") List<com.lila_shop.backend.enums.OrderStatus> statuses);
 
+        /**
+         * Đọc toàn bộ đơn hàng theo cursor (fetch size) cho response streaming, phải gọi trong transaction.
+         * Join sẵn các quan hệ ToOne mà OrderResponse dùng và shipment/cart (OneToOne phía inverse luôn load).
+         */
+        @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+        @Query("SELECT o FROM Order o LEFT JOIN FETCH o.user u LEFT JOIN FETCH u.cart "
+                        + "LEFT JOIN FETCH o.address LEFT JOIN FETCH o.shipment")
+        Stream<Order> streamAllWithRelations();
+
         /**
          * Tìm đơn hàng MoMo pending (chưa thanh toán) của user trong vòng 30 phút gần đây.
          * Dùng để tránh tạo duplicate order khi user click nhiều lần.
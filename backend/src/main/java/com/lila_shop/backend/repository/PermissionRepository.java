@@ -4,5 +4,9 @@ import com.lila_shop.backend.entity.Permission;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
-public interface PermissionRepository extends JpaRepository<Permission, String> {}
+public interface PermissionRepository extends JpaRepository<Permission, String> {
+    List<Permission> findAllByRole_Name(String roleName);
+}
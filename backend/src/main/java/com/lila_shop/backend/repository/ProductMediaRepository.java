@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +20,9 @@ public interface ProductMediaRepository extends JpaRepository<ProductMedia, Stri
     // Lấy tất cả media của product, sắp xếp theo displayOrder
     List<ProductMedia> findByProductIdOrderByDisplayOrderAsc(String productId);
 
+    // Lấy media của nhiều product trong 1 query (map danh sách sản phẩm)
+    List<ProductMedia> findByProductIdInOrderByDisplayOrderAsc(Collection<String> productIds);
+
     // Tìm media theo productId và mediaUrl
     Optional<ProductMedia> findByProductIdAndMediaUrl(String productId, String mediaUrl);
 
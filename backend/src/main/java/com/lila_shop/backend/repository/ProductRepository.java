@@ -3,26 +3,66 @@ package com.lila_shop.backend.repository;
 import com.lila_shop.backend.entity.Product;
 import com.lila_shop.backend.entity.User;
 import com.lila_shop.backend.enums.ProductStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import jakarta.persistence.LockModeType;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.transaction.annotation.Transactional;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, String> {
 
-        @Lock(LockModeType.PESSIMISTIC_WRITE)
-        @Query("SELECT p FROM Product p WHERE p.id = :id")
-        Optional<Product> findByIdWithLock(@Param("id") String id);
+        // Các query danh sách dùng @EntityGraph để join sẵn quan hệ ToOne mà ProductResponse cần
+        // (mediaList/variants được load theo lô ở ProductResponseAssembler), tránh N+1 khi map
+
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
+        @Query("SELECT p FROM Product p")
+        List<Product> findAllWithRelations();
+
+        // Đọc dần theo fetch size (cursor phía server), dùng cho response streaming; phải gọi trong transaction
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
+        @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+        @Query("SELECT p FROM Product p")
+        Stream<Product> streamAllWithRelations();
+
+        // [id, name, brand, quantitySold, categoryId] cho index gợi ý tìm kiếm, không load entity
+        @Query("SELECT p.id, p.name, p.brand, p.quantitySold, c.id FROM Product p LEFT JOIN p.category c "
+                        + "WHERE p.status = :status")
+        List<Object[]> findSuggestRowsByStatus(@Param("status") ProductStatus status);
+
+        // [id, categoryId, quantitySold] cho bảng xếp hạng bán chạy
+        @Query("SELECT p.id, c.id, p.quantitySold FROM Product p LEFT JOIN p.category c WHERE p.status = :status")
+        List<Object[]> findSalesRowsByStatus(@Param("status") ProductStatus status);
+
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
+        @Query("SELECT p FROM Product p WHERE p.id IN :ids")
+        List<Product> findAllWithRelationsByIdIn(@Param("ids") Collection<String> ids);
 
         // Tìm products theo category
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
         List<Product> findByCategoryId(String categoryId);
 
+        // Sản phẩm thuộc một nhánh danh mục (id danh mục + con cháu lấy từ CategoryTreeCache)
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
+        List<Product> findByCategoryIdInAndStatus(Collection<String> categoryIds, ProductStatus status);
+
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
+        Page<Product> findByCategoryIdInAndStatus(
+                        Collection<String> categoryIds, ProductStatus status, Pageable pageable);
+
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
         List<Product> findByStatus(ProductStatus status);
 
         // Tìm products theo name (case insensitive)
@@ -32,10 +72,12 @@ public interface ProductRepository extends JpaRepository<Product, String> {
         List<Product> findByBrandContainingIgnoreCase(String brand);
 
         // Tìm products theo price range
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
         @Query("SELECT p FROM Product p WHERE p.price BETWEEN :minPrice AND :maxPrice")
         List<Product> findByPriceRange(@Param("minPrice") double minPrice, @Param("maxPrice") double maxPrice);
 
         // Tìm products theo keyword search (name, brand, description, ingredients)
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
         @Query("SELECT p FROM Product p WHERE " + "LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR "
                         + "LOWER(p.brand) LIKE LOWER(CONCAT('%', :keyword, '%')) OR "
                         + "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')) OR "
@@ -43,6 +85,7 @@ public interface ProductRepository extends JpaRepository<Product, String> {
         List<Product> findByKeyword(@Param("keyword") String keyword);
 
         // Tìm products submitted bởi staff cụ thể
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
         List<Product> findBySubmittedBy(User submittedBy);
 
         // Tìm products theo expiry date range
@@ -77,6 +120,50 @@ public interface ProductRepository extends JpaRepository<Product, String> {
         // Tìm products ordered by quantity sold
         List<Product> findByStatusOrderByQuantitySoldDesc(ProductStatus status);
 
+        // ===== Phân trang keyset: cùng thứ tự với các findByStatusOrderBy... ở trên, thêm id làm tie-breaker =====
+        // Trang đầu truyền giá trị sentinel (MAX/MIN) nên không cần query riêng
+
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
+        @Query("SELECT p FROM Product p WHERE p.status IN :statuses "
+                        + "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) "
+                        + "ORDER BY p.createdAt DESC, p.id DESC")
+        List<Product> findPageOrderByCreatedAtDesc(
+                        @Param("statuses") Collection<ProductStatus> statuses,
+                        @Param("createdAt") LocalDateTime createdAt,
+                        @Param("id") String id,
+                        Pageable pageable);
+
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
+        @Query("SELECT p FROM Product p WHERE p.status IN :statuses "
+                        + "AND (p.price > :price OR (p.price = :price AND p.id > :id)) "
+                        + "ORDER BY p.price ASC, p.id ASC")
+        List<Product> findPageOrderByPriceAsc(
+                        @Param("statuses") Collection<ProductStatus> statuses,
+                        @Param("price") Double price,
+                        @Param("id") String id,
+                        Pageable pageable);
+
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
+        @Query("SELECT p FROM Product p WHERE p.status IN :statuses "
+                        + "AND (p.price < :price OR (p.price = :price AND p.id < :id)) "
+                        + "ORDER BY p.price DESC, p.id DESC")
+        List<Product> findPageOrderByPriceDesc(
+                        @Param("statuses") Collection<ProductStatus> statuses,
+                        @Param("price") Double price,
+                        @Param("id") String id,
+                        Pageable pageable);
+
+        // So sánh/sắp trên cột gốc để dùng idx_products_status_quantity_sold (quantity_sold NOT NULL DEFAULT 0)
+        @EntityGraph(attributePaths = { "category", "promotion", "inventory", "defaultMedia" })
+        @Query("SELECT p FROM Product p WHERE p.status IN :statuses "
+                        + "AND (p.quantitySold < :quantitySold OR (p.quantitySold = :quantitySold AND p.id < :id)) "
+                        + "ORDER BY p.quantitySold DESC, p.id DESC")
+        List<Product> findPageOrderByQuantitySoldDesc(
+                        @Param("statuses") Collection<ProductStatus> statuses,
+                        @Param("quantitySold") Integer quantitySold,
+                        @Param("id") String id,
+                        Pageable pageable);
+
         // Tính số lượng products theo category
         long countByCategoryId(String categoryId);
 
@@ -86,6 +173,66 @@ public interface ProductRepository extends JpaRepository<Product, String> {
         // Tính số lượng products submitted bởi user cụ thể
         long countBySubmittedBy(User submittedBy);
 
+        // Cộng/trừ nguyên tử lượt bán (trừ khi hủy đơn/hoàn tiền), không xuống dưới 0
+        @Modifying
+        @Query("UPDATE Product p SET p.quantitySold = CASE WHEN COALESCE(p.quantitySold, 0) + :delta < 0 THEN 0 "
+                        + "ELSE COALESCE(p.quantitySold, 0) + :delta END WHERE p.id = :productId")
+        int adjustQuantitySold(@Param("productId") String productId, @Param("delta") int delta);
+
+        // Cập nhật nguyên tử tổng hợp đánh giá: delta = 1 khi tạo review, -1 khi xóa
+        @Modifying
+        @Query("UPDATE Product p SET "
+                        + "p.reviewCount = COALESCE(p.reviewCount, 0) + :delta, "
+                        + "p.ratingSum = COALESCE(p.ratingSum, 0) + :delta * :rating, "
+                        + "p.rating1Count = COALESCE(p.rating1Count, 0) + CASE WHEN :rating = 1 THEN :delta ELSE 0 END, "
+                        + "p.rating2Count = COALESCE(p.rating2Count, 0) + CASE WHEN :rating = 2 THEN :delta ELSE 0 END, "
+                        + "p.rating3Count = COALESCE(p.rating3Count, 0) + CASE WHEN :rating = 3 THEN :delta ELSE 0 END, "
+                        + "p.rating4Count = COALESCE(p.rating4Count, 0) + CASE WHEN :rating = 4 THEN :delta ELSE 0 END, "
+                        + "p.rating5Count = COALESCE(p.rating5Count, 0) + CASE WHEN :rating = 5 THEN :delta ELSE 0 END "
+                        + "WHERE p.id = :productId")
+        int applyReviewRating(
+                        @Param("productId") String productId,
+                        @Param("rating") int rating,
+                        @Param("delta") int delta);
+
+        // Tính lại tổng hợp đánh giá từ bảng reviews cho các sản phẩm chưa có dữ liệu (chạy 1 lần khi nâng cấp)
+        @Modifying
+        @Transactional
+        @Query(value = "UPDATE products p LEFT JOIN ("
+                        + "SELECT r.product_id, COUNT(*) AS cnt, SUM(r.rating) AS total, "
+                        + "SUM(r.rating = 1) AS r1, SUM(r.rating = 2) AS r2, SUM(r.rating = 3) AS r3, "
+                        + "SUM(r.rating = 4) AS r4, SUM(r.rating = 5) AS r5 "
+                        + "FROM reviews r GROUP BY r.product_id) agg ON agg.product_id = p.id "
+                        + "SET p.review_count = COALESCE(agg.cnt, 0), p.rating_sum = COALESCE(agg.total, 0), "
+                        + "p.rating_1_count = COALESCE(agg.r1, 0), p.rating_2_count = COALESCE(agg.r2, 0), "
+                        + "p.rating_3_count = COALESCE(agg.r3, 0), p.rating_4_count = COALESCE(agg.r4, 0), "
+                        + "p.rating_5_count = COALESCE(agg.r5, 0) "
+                        + "WHERE p.review_count IS NULL",
+                        nativeQuery = true)
+        int backfillReviewAggregates();
+
+        // quantity_sold NULL từ trước khi cột có ràng buộc: gán 0 (chạy 1 lần khi nâng cấp)
+        @Modifying
+        @Transactional
+        @Query(value = "UPDATE products SET quantity_sold = 0 WHERE quantity_sold IS NULL", nativeQuery = true)
+        int backfillQuantitySold();
+
+        // ddl-auto=update không sửa cột đã tồn tại nên phải tự thêm NOT NULL DEFAULT 0
+        @Query(value = "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() "
+                        + "AND table_name = 'products' AND column_name = 'quantity_sold' AND is_nullable = 'YES'",
+                        nativeQuery = true)
+        long countNullableQuantitySoldColumns();
+
+        @Modifying
+        @Transactional
+        @Query(value = "ALTER TABLE products MODIFY quantity_sold INT NOT NULL DEFAULT 0", nativeQuery = true)
+        void makeQuantitySoldNotNull();
+
+        // [id, unitPrice, tax, price, discountValue, promotionId, promotionStart, promotionExpiry] cho EffectivePriceStore
+        @Query("SELECT p.id, p.unitPrice, p.tax, p.price, p.discountValue, pr.id, pr.startDate, pr.expiryDate "
+                        + "FROM Product p LEFT JOIN p.promotion pr")
+        List<Object[]> findAllPriceRows();
+
         // Tìm products theo promotion
         List<Product> findByPromotionId(String promotionId);
 
@@ -3,19 +3,45 @@ package com.lila_shop.backend.repository;
 import com.lila_shop.backend.entity.ProductVariant;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
-import jakarta.persistence.LockModeType;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
-import java.util.Optional;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductVariantRepository extends JpaRepository<ProductVariant, String> {
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("SELECT pv FROM ProductVariant pv WHERE pv.id = :id")
-    Optional<ProductVariant> findByIdWithLock(@Param("id") String id);
-
     List<ProductVariant> findByProductId(String productId);
+
+    // [id, price] của toàn bộ variants cho EffectivePriceStore
+    @Query("SELECT pv.id, pv.price FROM ProductVariant pv")
+    List<Object[]> findAllPriceRows();
+
+    // Lấy variants của nhiều product trong 1 query (map danh sách sản phẩm)
+    List<ProductVariant> findByProductIdIn(Collection<String> productIds);
+
+    // Trừ tồn kho nguyên tử khi đặt hàng, chỉ khi còn đủ hàng; trả về 0 = không đủ hàng.
+    // Variant đang flash sale không trừ ở đây (tồn kho do FlashSaleInventory giữ)
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ProductVariant pv SET pv.stockQuantity = pv.stockQuantity - :quantity "
+            + "WHERE pv.id = :id AND pv.stockQuantity >= :quantity "
+            + "AND (pv.hotStock IS NULL OR pv.hotStock = false)")
+    int decrementStock(@Param("id") String id, @Param("quantity") int quantity);
+
+    // Ghi trừ phần đã bán trong bộ nhớ của variant flash sale (đã kiểm tra đủ hàng lúc giữ)
+    @Modifying
+    @Query("UPDATE ProductVariant pv SET pv.stockQuantity = pv.stockQuantity - :quantity WHERE pv.id = :id")
+    int subtractStock(@Param("id") String id, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("UPDATE ProductVariant pv SET pv.hotStock = :hotStock WHERE pv.id = :id")
+    int updateHotStock(@Param("id") String id, @Param("hotStock") boolean hotStock);
+
+    // [id, stockQuantity] của các variant đang flash sale
+    @Query("SELECT pv.id, pv.stockQuantity FROM ProductVariant pv WHERE pv.hotStock = true")
+    List<Object[]> findHotStockRows();
+
+    @Query("SELECT pv.stockQuantity FROM ProductVariant pv WHERE pv.id = :id")
+    Integer findStockQuantityById(@Param("id") String id);
 }
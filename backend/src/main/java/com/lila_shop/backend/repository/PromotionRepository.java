@@ -70,6 +70,13 @@ public interface PromotionRepository extends JpaRepository<Promotion, String> {
             + "AND (p.expiryDate IS NULL OR p.expiryDate >= :today)")
     List<Promotion> findActiveByCategoryId(@Param("categoryId") String categoryId, @Param("today") LocalDate today);
 
+    // Cặp [promotionId, productId] / [promotionId, categoryId] của các promotion APPROVED, dùng cho ActivePromotionIndex
+    @Query("SELECT p.id, pr.id FROM Promotion p JOIN p.productApply pr WHERE p.status = 'APPROVED'")
+    List<Object[]> findApprovedProductTargets();
+
+    @Query("SELECT p.id, c.id FROM Promotion p JOIN p.categoryApply c WHERE p.status = 'APPROVED'")
+    List<Object[]> findApprovedCategoryTargets();
+
     // Tìm các promotion đã hết hạn nhưng chưa được chuyển vào bảng hết hạn
     @Query("SELECT p FROM Promotion p WHERE p.expiryDate < :today AND p.status != :expiredStatus")
     List<Promotion> findExpiredPromotions(@Param("today") LocalDate today, @Param("expiredStatus") PromotionStatus expiredStatus);
@@ -7,11 +7,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, String> {
@@ -20,6 +24,12 @@ public interface ReviewRepository extends JpaRepository<Review, String> {
 
     List<Review> findByUserId(String userId);
 
+    // Streaming toàn bộ review: join sẵn user/product và các OneToOne phía inverse (cart, inventory)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT r FROM Review r JOIN FETCH r.user u LEFT JOIN FETCH u.cart "
+            + "JOIN FETCH r.product p LEFT JOIN FETCH p.inventory")
+    Stream<Review> streamAllWithRelations();
+
     boolean existsByUserAndProduct(User user, Product product);
 
     // Tìm review của user cho product cụ thể
@@ -2,9 +2,17 @@ package com.lila_shop.backend.repository;
 
 import com.lila_shop.backend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
@@ -15,4 +23,13 @@ public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByEmail(String email);
 
     boolean existsByIdAndUsedVouchers_Id(String userId, String voucherId);
+
+    // Chỉ lấy [id, fullName], không load entity User (tránh load kèm cart)
+    @Query("SELECT u.id, u.fullName FROM User u WHERE u.id IN :ids")
+    List<Object[]> findFullNamesByIdIn(@Param("ids") Collection<String> ids);
+
+    // Streaming danh sách user: join sẵn role và cart (OneToOne phía inverse luôn load) để không N+1
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.role LEFT JOIN FETCH u.cart")
+    Stream<User> streamAll();
 }
@@ -0,0 +1,151 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.dto.response.BannerResponse;
+import com.lila_shop.backend.event.BannerChangedEvent;
+import com.lila_shop.backend.event.ProductChangedEvent;
+import com.lila_shop.backend.mapper.BannerMapper;
+import com.lila_shop.backend.repository.BannerRepository;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+// Danh sách banner đang hiển thị (status = true, trong khoảng startDate..endDate) đã map sẵn BannerResponse.
+// Load lại từ DB khi banner thay đổi (tạo/sửa/sắp xếp/xóa) hoặc sản phẩm gắn trên banner thay đổi;
+// đúng thời điểm banner tiếp theo bắt đầu/hết hạn thì lọc lại trên dữ liệu đã load, không cần query.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ActiveBannerCache {
+
+    @AllArgsConstructor
+    private static class DatedBanner {
+        BannerResponse response;
+        LocalDate startDate;
+        LocalDate endDate;
+
+        boolean isActiveOn(LocalDate day) {
+            return (startDate == null || !startDate.isAfter(day)) && (endDate == null || !endDate.isBefore(day));
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Snapshot {
+        // Toàn bộ banner đang bật, theo orderIndex
+        List<DatedBanner> enabled;
+        Set<String> productIds;
+        List<BannerResponse> active;
+    }
+
+    private final BannerRepository bannerRepository;
+    private final BannerMapper bannerMapper;
+    private final TaskScheduler taskScheduler;
+
+    private volatile Snapshot snapshot;
+    private ScheduledFuture<?> nextBoundary;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        reload();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBannerChanged(BannerChangedEvent event) {
+        reload();
+    }
+
+    // Tên sản phẩm hiển thị trên banner
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Snapshot current = snapshot;
+        if (current != null && current.productIds.contains(event.getProductId())) {
+            reload();
+        }
+    }
+
+    // Load lại định kỳ để nhận thay đổi banner từ node khác
+    @Scheduled(fixedDelayString = "${app.banner.refresh-ms:300000}", initialDelayString = "${app.banner.refresh-ms:300000}")
+    public void refresh() {
+        reload();
+    }
+
+    public List<BannerResponse> getActiveBanners() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            reload();
+            current = snapshot;
+            if (current == null) return List.of();
+        }
+        return current.active;
+    }
+
+    public synchronized void reload() {
+        try {
+            List<DatedBanner> enabled = bannerRepository.findWithProductsByStatus(true).stream()
+                    .map(banner -> new DatedBanner(
+                            bannerMapper.toResponse(banner), banner.getStartDate(), banner.getEndDate()))
+                    .toList();
+            Set<String> productIds = new HashSet<>();
+            for (DatedBanner banner : enabled) {
+                if (banner.response.getProductIds() != null) productIds.addAll(banner.response.getProductIds());
+            }
+            publish(enabled, productIds);
+        } catch (Exception e) {
+            log.error("Cannot load active banners: {}", e.getMessage(), e);
+        }
+    }
+
+    // Gọi đúng mốc startDate/endDate kế tiếp: chỉ lọc lại, không query
+    private synchronized void onBoundary() {
+        Snapshot current = snapshot;
+        if (current != null) publish(current.enabled, current.productIds);
+    }
+
+    private void publish(List<DatedBanner> enabled, Set<String> productIds) {
+        LocalDate today = LocalDate.now();
+        List<BannerResponse> active = enabled.stream()
+                .filter(banner -> banner.isActiveOn(today))
+                .map(banner -> banner.response)
+                .toList();
+        snapshot = new Snapshot(enabled, productIds, active);
+        scheduleNextBoundary(enabled, today);
+        log.debug("Active banners refreshed: {} active / {} enabled", active.size(), enabled.size());
+    }
+
+    // Mốc kế tiếp: 0h ngày startDate (banner bắt đầu) hoặc 0h ngày sau endDate (banner hết hạn)
+    private void scheduleNextBoundary(List<DatedBanner> enabled, LocalDate today) {
+        if (nextBoundary != null) nextBoundary.cancel(false);
+        nextBoundary = null;
+
+        LocalDate next = null;
+        for (DatedBanner banner : enabled) {
+            if (banner.startDate != null && banner.startDate.isAfter(today)) {
+                next = earlier(next, banner.startDate);
+            }
+            if (banner.endDate != null && !banner.endDate.isBefore(today)) {
+                next = earlier(next, banner.endDate.plusDays(1));
+            }
+        }
+        if (next != null) {
+            // Lệch 1 giây để LocalDate.now() chắc chắn đã sang ngày mới khi chạy
+            nextBoundary = taskScheduler.schedule(
+                    this::onBoundary, next.atStartOfDay(ZoneId.systemDefault()).toInstant().plusSeconds(1));
+        }
+    }
+
+    private static LocalDate earlier(LocalDate current, LocalDate candidate) {
+        return current == null || candidate.isBefore(current) ? candidate : current;
+    }
+}
@@ -0,0 +1,113 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.entity.Promotion;
+import com.lila_shop.backend.enums.PromotionStatus;
+import com.lila_shop.backend.event.PromotionChangedEvent;
+import com.lila_shop.backend.repository.PromotionRepository;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Promotion APPROVED theo productId và categoryId, mỗi danh sách sắp theo startDate.
+// Tra cứu promotion đang áp dụng cho sản phẩm là lookup trong map, không cần query.
+// Build lại toàn bộ khi promotion thay đổi (số promotion nhỏ) và định kỳ để nhận thay đổi từ node khác.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ActivePromotionIndex {
+    private static final Comparator<Promotion> BY_START_DATE = Comparator
+            .comparing(Promotion::getStartDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Promotion::getId);
+
+    @AllArgsConstructor
+    private static class Snapshot {
+        Map<String, List<Promotion>> byProduct;
+        Map<String, List<Promotion>> byCategory;
+    }
+
+    private final PromotionRepository promotionRepository;
+
+    private volatile Snapshot snapshot;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPromotionChanged(PromotionChangedEvent event) {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${app.promotion-index.refresh-ms:300000}")
+    public void rebuild() {
+        try {
+            snapshot = load();
+        } catch (Exception e) {
+            log.error("Cannot build active promotion index: {}", e.getMessage(), e);
+        }
+    }
+
+    // Promotion đang hiệu lực hôm nay cho sản phẩm (theo product hoặc category), ưu tiên startDate sớm nhất
+    public Promotion findActivePromotion(String productId, String categoryId, LocalDate today) {
+        return findCandidates(productId, categoryId, today).stream()
+                .filter(p -> p.getStartDate() == null || !p.getStartDate().isAfter(today))
+                .findFirst()
+                .orElse(null);
+    }
+
+    // Promotion APPROVED, isActive và chưa hết hạn (kể cả chưa đến startDate), sắp theo startDate.
+    // Tương đương promotionRepository.findActiveByProductId + findActiveByCategoryId
+    public List<Promotion> findCandidates(String productId, String categoryId, LocalDate today) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            rebuild();
+            current = snapshot;
+            if (current == null) return List.of();
+        }
+
+        Set<Promotion> candidates = new LinkedHashSet<>();
+        if (productId != null) candidates.addAll(current.byProduct.getOrDefault(productId, List.of()));
+        if (categoryId != null) candidates.addAll(current.byCategory.getOrDefault(categoryId, List.of()));
+
+        return candidates.stream()
+                .filter(p -> Boolean.TRUE.equals(p.getIsActive()))
+                .filter(p -> p.getExpiryDate() == null || !p.getExpiryDate().isBefore(today))
+                .sorted(BY_START_DATE)
+                .toList();
+    }
+
+    private Snapshot load() {
+        Map<String, Promotion> promotions = promotionRepository.findByStatus(PromotionStatus.APPROVED).stream()
+                .collect(Collectors.toMap(Promotion::getId, Function.identity()));
+
+        Map<String, List<Promotion>> byProduct =
+                group(promotionRepository.findApprovedProductTargets(), promotions);
+        Map<String, List<Promotion>> byCategory =
+                group(promotionRepository.findApprovedCategoryTargets(), promotions);
+
+        log.info("Active promotion index built: {} promotions, {} products, {} categories",
+                promotions.size(), byProduct.size(), byCategory.size());
+        return new Snapshot(byProduct, byCategory);
+    }
+
+    private static Map<String, List<Promotion>> group(List<Object[]> rows, Map<String, Promotion> promotions) {
+        Map<String, List<Promotion>> grouped = new HashMap<>();
+        for (Object[] row : rows) {
+            Promotion promotion = promotions.get((String) row[0]);
+            if (promotion == null) continue;
+            grouped.computeIfAbsent((String) row[1], k -> new ArrayList<>()).add(promotion);
+        }
+        grouped.replaceAll((key, list) -> list.stream().sorted(BY_START_DATE).toList());
+        return grouped;
+    }
+}
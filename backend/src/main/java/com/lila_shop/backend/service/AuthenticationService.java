@@ -24,16 +24,12 @@ import lombok.experimental.FieldDefaults;
 import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.util.CollectionUtils;
 
 import java.text.ParseException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
-import java.util.StringJoiner;
 import java.util.UUID;
 
 @Service
@@ -43,6 +39,9 @@ import java.util.UUID;
 public class AuthenticationService {
     UserRepository userRepository;
     InvalidatedTokenRepository invalidatedRepository;
+    InvalidatedTokenCache invalidatedTokenCache;
+    PasswordHashingService passwordHashingService;
+    RoleScopeCache roleScopeCache;
 
     @NonFinal
     @Value("${jwt.signerKey}")
@@ -77,12 +76,12 @@ public class AuthenticationService {
     public AuthenticationResponse authenticate(AuthenticationRequest request) {
         log.info("SignKey: {}", SIGNER_KEY);
 
-        PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(10);
         var user = userRepository
                 .findByEmail(request.getEmail())
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
 
-        boolean authenticated = passwordEncoder.matches(request.getPassword(), user.getPassword());
+        // bcrypt chạy trên pool riêng, từ chối ngay khi quá tải
+        boolean authenticated = passwordHashingService.matches(request.getPassword(), user.getPassword());
 
         // Sai mật khẩu
         if (!authenticated) {
@@ -110,6 +109,7 @@ public class AuthenticationService {
                     InvalidatedToken.builder().id(jit).expiryTime(expiryTime).build();
             // Use upsert to avoid duplicate key on concurrent/logout retries
             invalidatedRepository.saveOrUpdate(jit, expiryTime);
+            invalidatedTokenCache.revoke(jit, expiryTime);
         } catch (AppException ex) {
             log.info("Token already expired");
         }
@@ -135,21 +135,31 @@ public class AuthenticationService {
         // Kiểm tra hết hạn token
         if (!(verified && expiryTime.after(new Date()))) throw new AppException(ErrorCode.UNAUTHENTICATED);
 
-        // Kiểm tra token tồn tại trong trong invalidatedRepository
-        if (invalidatedRepository.existsById(signedJWT.getJWTClaimsSet().getJWTID()))
-            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        checkTokenState(
+                signedJWT.getJWTClaimsSet().getJWTID(),
+                signedJWT.getJWTClaimsSet().getSubject());
+
+        return signedJWT;
+    }
+
+    // Xác minh access token (chữ ký + hạn dùng + trạng thái), dùng cho CustomJwtDecoder
+    public SignedJWT verifyAccessToken(String token) throws JOSEException, ParseException {
+        return verifyToken(token, false);
+    }
+
+    // Các kiểm tra vẫn phải chạy lại kể cả khi chữ ký token đã được xác minh trước đó
+    public void checkTokenState(String jti, String email) {
+        // Kiểm tra token đã bị thu hồi (cache được đồng bộ với invalidatedRepository)
+        if (invalidatedTokenCache.isRevoked(jti)) throw new AppException(ErrorCode.UNAUTHENTICATED);
 
         // Kiểm tra trạng thái tài khoản (isActive). Nếu user đã bị khóa
         // thì coi như token không còn hợp lệ.
-        String email = signedJWT.getJWTClaimsSet().getSubject();
         User user = userRepository
                 .findByEmail(email)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
         if (!user.isActive()) {
             throw new AppException(ErrorCode.UNAUTHENTICATED);
         }
-
-        return signedJWT;
     }
 
     // Đảm bảo token không được quá 4 KB
@@ -205,6 +215,7 @@ public class AuthenticationService {
 
         // Idempotent insert to handle concurrent refresh requests
         invalidatedRepository.saveOrUpdate(jit, expiryTime);
+        invalidatedTokenCache.revoke(jit, expiryTime);
 
         var email = signJWT.getJWTClaimsSet().getSubject();
 
@@ -215,17 +226,11 @@ public class AuthenticationService {
         return AuthenticationResponse.builder().token(token).authenticated(true).build();
     }
 
+    // Role chỉ cần name (khóa chính) nên không phải load Role/Permission từ DB khi đã có trong cache
     private String buildScope(User user) {
-        StringJoiner stringJoiner = new StringJoiner(" ");
-
-        if (user.getRole() != null) {
-            Role role = user.getRole();
-            stringJoiner.add("ROLE_" + role.getName());
-            if (!CollectionUtils.isEmpty(role.getPermissions()))
-                role.getPermissions().forEach(permission -> stringJoiner.add(permission.getName()));
-        }
-        ;
+        Role role = user.getRole();
+        if (role == null) return "";
 
-        return stringJoiner.toString();
+        return roleScopeCache.getScope(role.getName());
     }
 }
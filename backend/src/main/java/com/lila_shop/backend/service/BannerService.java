@@ -6,6 +6,7 @@ import com.lila_shop.backend.dto.response.BannerResponse;
 import com.lila_shop.backend.entity.Banner;
 import com.lila_shop.backend.entity.Product;
 import com.lila_shop.backend.entity.User;
+import com.lila_shop.backend.event.BannerChangedEvent;
 import com.lila_shop.backend.exception.AppException;
 import com.lila_shop.backend.exception.ErrorCode;
 import com.lila_shop.backend.mapper.BannerMapper;
@@ -17,6 +18,7 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -26,7 +28,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.time.LocalDate;
 
 @Service
 @RequiredArgsConstructor
@@ -38,6 +39,8 @@ public class BannerService {
     UserRepository userRepository;
     ProductRepository productRepository;
     BannerMapper bannerMapper;
+    ApplicationEventPublisher eventPublisher;
+    ActiveBannerCache activeBannerCache;
 
     @Transactional
     @PreAuthorize("hasRole('STAFF')")
@@ -80,6 +83,7 @@ public class BannerService {
         }
 
         Banner savedBanner = bannerRepository.save(banner);
+        eventPublisher.publishEvent(new BannerChangedEvent(savedBanner.getId()));
         log.info("Banner created with ID: {} by user: {}", savedBanner.getId(), userEmail);
 
         return bannerMapper.toResponse(savedBanner);
@@ -103,45 +107,9 @@ public class BannerService {
         return banners.stream().map(bannerMapper::toResponse).toList();
     }
 
+    // Đọc từ cache đã lọc sẵn theo status/startDate/endDate, không query DB
     public List<BannerResponse> getActiveBanners() {
-        List<Banner> banners = bannerRepository.findByStatusOrderByOrderIndexAsc(true);
-        LocalDate today = LocalDate.now();
-
-        // Filter banners by status AND date range
-        List<BannerResponse> result = banners.stream()
-                .filter(banner -> {
-                    // Must have status = true
-                    if (!Boolean.TRUE.equals(banner.getStatus())) {
-                        return false;
-                    }
-
-                    // Check start date: if set, must be today or in the past
-                    // Use isAfter with equals check to include today
-                    if (banner.getStartDate() != null && banner.getStartDate().isAfter(today)) {
-                        return false; // Not started yet
-                    }
-
-                    // Check end date: if set, must be today or in the future
-                    // Use isBefore with equals check to include today
-                    if (banner.getEndDate() != null && banner.getEndDate().isBefore(today)) {
-                        return false; // Already expired
-                    }
-
-                    return true; // Active banner
-                })
-                .peek(banner -> {
-                    // Force load products if lazy loaded
-                    if (banner.getProducts() != null) {
-                        banner.getProducts().size(); // Trigger lazy loading
-                    }
-                })
-                .map(banner -> {
-                    BannerResponse response = bannerMapper.toResponse(banner);
-                    return response;
-                })
-                .toList();
-
-        return result;
+        return activeBannerCache.getActiveBanners();
     }
 
     @Transactional
@@ -229,6 +197,7 @@ public class BannerService {
         }
 
         Banner savedBanner = bannerRepository.save(banner);
+        eventPublisher.publishEvent(new BannerChangedEvent(savedBanner.getId()));
         log.info(
                 "Banner updated: {} by user: {}",
                 bannerId,
@@ -254,6 +223,7 @@ public class BannerService {
         }
 
         bannerRepository.delete(banner);
+        eventPublisher.publishEvent(new BannerChangedEvent(bannerId));
         log.info(
                 "Banner deleted: {} by user: {}",
                 bannerId,
@@ -270,6 +240,7 @@ public class BannerService {
         banner.setUpdatedAt(LocalDateTime.now());
 
         Banner savedBanner = bannerRepository.save(banner);
+        eventPublisher.publishEvent(new BannerChangedEvent(savedBanner.getId()));
         log.info("Banner order updated: {} to order: {}", bannerId, newOrderIndex);
 
         return bannerMapper.toResponse(savedBanner);
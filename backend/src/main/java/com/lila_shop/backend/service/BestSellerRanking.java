@@ -0,0 +1,219 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.entity.Product;
+import com.lila_shop.backend.enums.ProductStatus;
+import com.lila_shop.backend.event.ProductChangedEvent;
+import com.lila_shop.backend.repository.ProductRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+// Bảng xếp hạng bán chạy trong bộ nhớ cho sản phẩm APPROVED: toàn catalog và theo từng danh mục,
+// mỗi bảng là skip list sắp theo quantitySold giảm dần. Đơn hàng tạo/hủy/hoàn tiền cộng trừ trực tiếp
+// (sau commit), không phải sắp lại cả catalog ở mỗi lần đọc.
+// Build lại định kỳ từ DB để nhận lượt bán ghi ở node khác.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BestSellerRanking {
+
+    // Khóa sắp xếp bất biến: đổi lượt bán = xóa khóa cũ, thêm khóa mới
+    private record Rank(long sold, String productId) {
+    }
+
+    private static final Comparator<Rank> BY_SOLD = Comparator
+            .comparingLong(Rank::sold)
+            .reversed()
+            .thenComparing(Rank::productId);
+
+    @AllArgsConstructor
+    private static class Entry {
+        String categoryId;
+        Rank rank;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class RankPage {
+        List<String> productIds;
+        long totalElements;
+    }
+
+    // Build lại tạo State mới rồi thay thế, request đang đọc không thấy bảng rỗng giữa chừng
+    private static class State {
+        Map<String, Entry> entries = new HashMap<>();
+        NavigableSet<Rank> overall = new ConcurrentSkipListSet<>(BY_SOLD);
+        Map<String, NavigableSet<Rank>> byCategory = new ConcurrentHashMap<>();
+    }
+
+    private final ProductRepository productRepository;
+
+    private volatile State state = new State();
+
+    // Thay đổi phát sinh trong lúc rebuild đọc DB: áp dụng lại vào State mới trước khi thay thế
+    private List<Consumer<State>> pending;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.best-seller.refresh-ms:600000}",
+            initialDelayString = "${app.best-seller.refresh-ms:600000}")
+    public void rebuild() {
+        try {
+            List<Object[]> rows = productRepository.findSalesRowsByStatus(ProductStatus.APPROVED);
+            // Kết quả đọc đã gồm lượt bán commit trước câu query: chỉ ghi nhận thay đổi từ sau thời điểm này
+            // (mở pending trước câu query thì lượt bán trong khoảng đó bị cộng 2 lần)
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+            State built = new State();
+            for (Object[] row : rows) {
+                put(built, (String) row[0], (String) row[1], row[2] != null ? ((Number) row[2]).longValue() : 0L);
+            }
+            synchronized (this) {
+                pending.forEach(change -> change.accept(built));
+                state = built;
+            }
+            log.info("Best seller ranking built: {} products, {} categories", rows.size(), built.byCategory.size());
+        } catch (Exception e) {
+            log.error("Cannot build best seller ranking: {}", e.getMessage(), e);
+        } finally {
+            synchronized (this) {
+                pending = null;
+            }
+        }
+    }
+
+    // Sản phẩm đổi trạng thái/danh mục: đọc lại đúng sản phẩm đó
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        productRepository
+                .findById(event.getProductId())
+                .ifPresentOrElse(this::update, () -> remove(event.getProductId()));
+    }
+
+    // delta > 0 khi bán, < 0 khi hủy/hoàn tiền. Gọi trong transaction thì áp dụng sau khi commit
+    public void recordSale(String productId, long delta) {
+        if (productId == null || delta == 0) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applySale(productId, delta);
+                }
+            });
+        } else {
+            applySale(productId, delta);
+        }
+    }
+
+    // categoryIds null/rỗng = toàn catalog; nhiều danh mục (vd: danh mục cha + con) thì trộn các bảng đã sắp
+    public RankPage page(Collection<String> categoryIds, int page, int size) {
+        State current = state;
+        int offset = page * size;
+        if (categoryIds == null || categoryIds.isEmpty()) {
+            return new RankPage(slice(current.overall, offset, size), current.overall.size());
+        }
+
+        List<NavigableSet<Rank>> sets = new ArrayList<>();
+        long total = 0;
+        for (String categoryId : categoryIds) {
+            NavigableSet<Rank> set = current.byCategory.get(categoryId);
+            if (set != null && !set.isEmpty()) {
+                sets.add(set);
+                total += set.size();
+            }
+        }
+        if (sets.size() == 1) {
+            return new RankPage(slice(sets.get(0), offset, size), total);
+        }
+
+        // Mỗi bảng chỉ cần offset + size phần tử đầu để có đúng trang cần lấy
+        List<Rank> merged = new ArrayList<>();
+        for (NavigableSet<Rank> set : sets) {
+            set.stream().limit((long) offset + size).forEach(merged::add);
+        }
+        merged.sort(BY_SOLD);
+        return new RankPage(
+                merged.stream().skip(offset).limit(size).map(Rank::productId).toList(), total);
+    }
+
+    private void applySale(String productId, long delta) {
+        change(target -> {
+            Entry entry = target.entries.get(productId);
+            if (entry == null) return; // chưa được duyệt hoặc chưa build
+            put(target, productId, entry.categoryId, Math.max(0, entry.rank.sold() + delta));
+        });
+    }
+
+    private void update(Product product) {
+        if (product.getStatus() != ProductStatus.APPROVED) {
+            remove(product.getId());
+            return;
+        }
+        String productId = product.getId();
+        String categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        long sold = product.getQuantitySold() != null ? product.getQuantitySold() : 0L;
+        change(target -> put(target, productId, categoryId, sold));
+    }
+
+    private void remove(String productId) {
+        change(target -> {
+            Entry entry = target.entries.remove(productId);
+            if (entry != null) unlink(target, entry);
+        });
+    }
+
+    private synchronized void change(Consumer<State> change) {
+        if (pending != null) pending.add(change);
+        change.accept(state);
+    }
+
+    private static void put(State target, String productId, String categoryId, long sold) {
+        Entry previous = target.entries.get(productId);
+        if (previous != null) unlink(target, previous);
+
+        Entry entry = new Entry(categoryId, new Rank(sold, productId));
+        target.entries.put(productId, entry);
+        target.overall.add(entry.rank);
+        if (categoryId != null) {
+            target.byCategory
+                    .computeIfAbsent(categoryId, k -> new ConcurrentSkipListSet<>(BY_SOLD))
+                    .add(entry.rank);
+        }
+    }
+
+    private static void unlink(State target, Entry entry) {
+        target.overall.remove(entry.rank);
+        if (entry.categoryId != null) {
+            NavigableSet<Rank> set = target.byCategory.get(entry.categoryId);
+            if (set != null) set.remove(entry.rank);
+        }
+    }
+
+    private static List<String> slice(NavigableSet<Rank> set, int offset, int size) {
+        return set.stream().skip(offset).limit(size).map(Rank::productId).toList();
+    }
+}
@@ -0,0 +1,190 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.entity.Category;
+import com.lila_shop.backend.entity.Product;
+import com.lila_shop.backend.entity.Voucher;
+import com.lila_shop.backend.enums.DiscountApplyScope;
+import com.lila_shop.backend.enums.DiscountValueType;
+import com.lila_shop.backend.enums.VoucherStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Tính tiền giỏ hàng thuần trong bộ nhớ: dòng hàng (đơn giá hiện hành, số lượng) + điều kiện voucher -> tổng tiền.
+// Không đọc/ghi DB và không sửa entity; CartService tự quyết định dòng nào cần lưu lại.
+// Mọi số tiền làm tròn về đơn vị đồng như trước đây.
+@Component
+public class CartPricingEngine {
+
+    @Getter
+    @AllArgsConstructor
+    public static class Line {
+        String productId;
+        String categoryId;
+        int quantity;
+        double unitPrice;
+    }
+
+    // Ảnh chụp điều kiện của voucher, đọc 1 lần từ entity (kể cả danh sách sản phẩm/danh mục áp dụng)
+    @Getter
+    @AllArgsConstructor
+    public static class VoucherTerms {
+        String code;
+        boolean usable;
+        LocalDate startDate;
+        LocalDate expiryDate;
+        DiscountValueType valueType;
+        double discountValue;
+        Double maxDiscountValue;
+        Double minOrderValue;
+        Double maxOrderValue;
+        DiscountApplyScope scope;
+        Set<String> productIds;
+        Set<String> categoryIds;
+
+        public static VoucherTerms of(Voucher voucher) {
+            if (voucher == null) return null;
+            DiscountApplyScope scope = voucher.getApplyScope() != null ? voucher.getApplyScope() : DiscountApplyScope.ORDER;
+            Set<String> productIds = scope == DiscountApplyScope.PRODUCT && voucher.getProductApply() != null
+                    ? voucher.getProductApply().stream()
+                            .filter(Objects::nonNull)
+                            .map(Product::getId)
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toUnmodifiableSet())
+                    : Set.of();
+            Set<String> categoryIds = scope == DiscountApplyScope.CATEGORY && voucher.getCategoryApply() != null
+                    ? voucher.getCategoryApply().stream()
+                            .filter(Objects::nonNull)
+                            .map(Category::getId)
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toUnmodifiableSet())
+                    : Set.of();
+            return new VoucherTerms(
+                    voucher.getCode(),
+                    Boolean.TRUE.equals(voucher.getIsActive()) && voucher.getStatus() == VoucherStatus.APPROVED,
+                    voucher.getStartDate(),
+                    voucher.getExpiryDate(),
+                    voucher.getDiscountValueType(),
+                    voucher.getDiscountValue() != null ? voucher.getDiscountValue() : 0.0,
+                    voucher.getMaxDiscountValue(),
+                    voucher.getMinOrderValue(),
+                    voucher.getMaxOrderValue(),
+                    scope,
+                    productIds,
+                    categoryIds);
+        }
+
+        boolean appliesTo(Line line) {
+            return switch (scope) {
+                case ORDER -> true;
+                case PRODUCT -> line.productId != null && productIds.contains(line.productId);
+                case CATEGORY -> line.categoryId != null && categoryIds.contains(line.categoryId);
+            };
+        }
+    }
+
+    // Lý do voucher không được áp dụng
+    public enum VoucherRejection {
+        NOT_AVAILABLE, // không active / chưa duyệt / ngoài thời hạn
+        EMPTY_CART,
+        BELOW_MIN_ORDER,
+        ABOVE_MAX_ORDER,
+        OUT_OF_SCOPE, // không có sản phẩm nào thuộc phạm vi voucher
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+        // Thành tiền từng dòng, cùng thứ tự với lines đầu vào
+        double[] lineTotals;
+        double subtotal;
+        // Phần subtotal thuộc phạm vi voucher
+        double applicableSubtotal;
+        double voucherDiscount;
+        double totalAmount;
+        // Mã voucher đang được áp dụng, null nếu không có / bị loại
+        String appliedVoucherCode;
+        VoucherRejection voucherRejection;
+
+        public double getLineTotal(int index) {
+            return lineTotals[index];
+        }
+
+        // Tổng thanh toán khi checkout các dòng này: dùng chung cho báo giá và tạo đơn
+        public double totalWithShipping(double shippingFee) {
+            return Math.round(Math.max(0.0, subtotal + shippingFee - voucherDiscount));
+        }
+    }
+
+    public Result price(List<Line> lines, VoucherTerms voucher, LocalDate today) {
+        double[] lineTotals = new double[lines.size()];
+        double subtotal = 0.0;
+        for (int i = 0; i < lineTotals.length; i++) {
+            Line line = lines.get(i);
+            lineTotals[i] = line.unitPrice * line.quantity;
+            subtotal += lineTotals[i];
+        }
+        subtotal = Math.round(subtotal);
+
+        if (voucher == null) {
+            return new Result(lineTotals, subtotal, 0.0, 0.0, subtotal, null, null);
+        }
+
+        double applicableSubtotal = applicableSubtotal(lines, lineTotals, subtotal, voucher);
+        VoucherRejection rejection = validate(voucher, subtotal, applicableSubtotal, today);
+        if (rejection != null) {
+            return new Result(lineTotals, subtotal, applicableSubtotal, 0.0, subtotal, null, rejection);
+        }
+
+        double discount = voucher.valueType == DiscountValueType.PERCENTAGE
+                ? applicableSubtotal * (voucher.discountValue / 100.0)
+                : voucher.discountValue;
+        if (voucher.maxDiscountValue != null && voucher.maxDiscountValue > 0) {
+            discount = Math.min(discount, voucher.maxDiscountValue);
+        }
+        discount = Math.round(Math.min(discount, applicableSubtotal));
+
+        double total = Math.round(Math.max(0.0, subtotal - discount));
+        return new Result(lineTotals, subtotal, applicableSubtotal, discount, total, voucher.code, null);
+    }
+
+    private static VoucherRejection validate(
+            VoucherTerms voucher, double subtotal, double applicableSubtotal, LocalDate today) {
+        if (!voucher.usable
+                || (voucher.startDate != null && today.isBefore(voucher.startDate))
+                || (voucher.expiryDate != null && today.isAfter(voucher.expiryDate))) {
+            return VoucherRejection.NOT_AVAILABLE;
+        }
+        if (subtotal <= 0) {
+            return VoucherRejection.EMPTY_CART;
+        }
+        if (voucher.minOrderValue != null && voucher.minOrderValue > 0 && applicableSubtotal < voucher.minOrderValue) {
+            return VoucherRejection.BELOW_MIN_ORDER;
+        }
+        if (voucher.maxOrderValue != null && voucher.maxOrderValue > 0 && applicableSubtotal > voucher.maxOrderValue) {
+            return VoucherRejection.ABOVE_MAX_ORDER;
+        }
+        if (voucher.scope != DiscountApplyScope.ORDER && applicableSubtotal <= 0) {
+            return VoucherRejection.OUT_OF_SCOPE;
+        }
+        return null;
+    }
+
+    private static double applicableSubtotal(
+            List<Line> lines, double[] lineTotals, double subtotal, VoucherTerms voucher) {
+        if (voucher.scope == DiscountApplyScope.ORDER) {
+            return subtotal;
+        }
+        double applicable = 0.0;
+        for (int i = 0; i < lineTotals.length; i++) {
+            if (voucher.appliesTo(lines.get(i))) applicable += lineTotals[i];
+        }
+        return Math.round(applicable);
+    }
+}
@@ -1,23 +1,32 @@
 package com.lila_shop.backend.service;
 
+import com.lila_shop.backend.dto.request.CartQuoteRequest;
+import com.lila_shop.backend.dto.response.CartItemResponse;
+import com.lila_shop.backend.dto.response.CartQuoteResponse;
 import com.lila_shop.backend.entity.*;
-import com.lila_shop.backend.enums.DiscountApplyScope;
-import com.lila_shop.backend.enums.DiscountValueType;
-import com.lila_shop.backend.enums.VoucherStatus;
 import com.lila_shop.backend.exception.AppException;
 import com.lila_shop.backend.exception.ErrorCode;
+import com.lila_shop.backend.mapper.CartMapper;
 import com.lila_shop.backend.repository.*;
 import com.lila_shop.backend.util.SecurityUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.hibernate.Hibernate;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -32,6 +41,13 @@ public class CartService {
     @SuppressWarnings("unused")
     PromotionRepository promotionRepository;
     VoucherRepository voucherRepository;
+    CartPricingEngine cartPricingEngine;
+    CartMapper cartMapper;
+    FlashSaleInventory flashSaleInventory;
+
+    @NonFinal
+    @PersistenceContext
+    EntityManager entityManager;
 
     @Transactional
     @PreAuthorize("hasRole('CUSTOMER')")
@@ -87,7 +103,7 @@ public class CartService {
 
         Integer stockQuantity = null;
         if (variant != null) {
-            stockQuantity = variant.getStockQuantity();
+            stockQuantity = variantStock(variant);
         } else if (product.getInventory() != null) {
             stockQuantity = product.getInventory().getStockQuantity();
         }
@@ -117,116 +133,110 @@ public class CartService {
         double finalPrice = cartItem.getQuantity() * cartItem.getUnitPrice();
         cartItem.setFinalPrice(finalPrice);
 
-        cartItemRepository.save(cartItem);
+        // Dòng đã có trong giỏ là entity managed, thay đổi được ghi cùng batch khi flush
+        if (cartItem.getId() == null) {
+            cartItemRepository.save(cartItem);
+        }
         recalcCartTotals(cart);
         return cart;
     }
 
     private double calculateUnitPrice(Product product, ProductVariant variant) {
-        double price;
-        if (variant != null && variant.getPrice() != null) {
-            price = variant.getPrice();
-        } else {
-            price = product.getPrice() != null ? product.getPrice() : 0.0;
-        }
-        return Math.round(price);
+        // Giá variant nếu có, ngược lại giá hiện hành (đã áp promotion) của product
+        return Math.round(EffectivePriceStore.unitPrice(product, variant));
     }
 
     private void recalcCartTotals(Cart cart) {
-        // Đồng bộ lại đơn giá và thành tiền của từng cartItem
-        if (cart.getCartItems() != null && !cart.getCartItems().isEmpty()) {
-            cart.getCartItems().forEach(item -> {
-                Product product = item.getProduct();
-                if (product != null) {
-                    // Tính lại đơn giá dựa trên cấu hình khuyến mãi hiện tại
-                    double unitPrice = calculateUnitPrice(product, item.getVariant());
-                    item.setUnitPrice(unitPrice);
-                    double finalPrice = unitPrice * item.getQuantity();
-                    item.setFinalPrice(finalPrice);
-                    cartItemRepository.save(item);
-                }
-            });
-        }
-
-        // Tính lại subtotal từ các cartItem (nếu chưa có item thì subtotal = 0)
-        double subtotal = cart.getCartItems() == null
-                ? 0.0
-                : cart.getCartItems().stream()
-                        .mapToDouble(item -> {
-                            Double finalPrice = item.getFinalPrice();
-                            return finalPrice != null ? finalPrice : 0.0;
-                        })
-                        .sum();
-        // Làm tròn subtotal về đơn vị đồng
-        subtotal = Math.round(subtotal);
-        cart.setSubtotal(subtotal);
-
-        Double rawVoucherDiscount = cart.getVoucherDiscount();
-        double voucherDiscount = rawVoucherDiscount == null ? 0.0 : rawVoucherDiscount;
-        // Làm tròn tiền giảm giá về đơn vị đồng
-        voucherDiscount = Math.round(voucherDiscount);
-
-        // Validate lại voucher nếu có voucher đã được áp dụng
-        if (cart.getAppliedVoucherCode() != null && !cart.getAppliedVoucherCode().isEmpty()) {
-            try {
-                var voucher = voucherRepository.findByCode(cart.getAppliedVoucherCode()).orElse(null);
-                if (voucher != null && voucher.getIsActive()
-                        && voucher.getStatus() == VoucherStatus.APPROVED) {
-                    double applicableSubtotal = calculateApplicableSubtotal(cart, voucher);
-
-                    // Kiểm tra lại minOrderValue
-                    if (voucher.getMinOrderValue() != null && voucher.getMinOrderValue() > 0
-                            && applicableSubtotal < voucher.getMinOrderValue()) {
-                        // Voucher không còn hợp lệ, xóa voucher
-                        cart.setAppliedVoucherCode(null);
-                        voucherDiscount = 0.0;
-                    } else if (voucher.getMaxOrderValue() != null && voucher.getMaxOrderValue() > 0
-                            && applicableSubtotal > voucher.getMaxOrderValue()) {
-                        // Voucher không còn hợp lệ, xóa voucher
-                        cart.setAppliedVoucherCode(null);
-                        voucherDiscount = 0.0;
-                    } else {
-                        // Tính lại discount dựa trên applicableSubtotal
-                        double discountValue = voucher.getDiscountValue();
-                        double discount;
-                        if (voucher.getDiscountValueType() == DiscountValueType.PERCENTAGE) {
-                            discount = applicableSubtotal * (discountValue / 100.0);
-                        } else {
-                            discount = discountValue;
-                        }
-
-                        if (voucher.getMaxDiscountValue() != null && voucher.getMaxDiscountValue() > 0) {
-                            discount = Math.min(discount, voucher.getMaxDiscountValue());
-                        }
-                        discount = Math.min(discount, applicableSubtotal);
-                        discount = Math.round(discount);
-                        voucherDiscount = discount;
-                    }
-                } else {
-                    // Voucher không còn active hoặc không tồn tại, xóa voucher
-                    cart.setAppliedVoucherCode(null);
-                    voucherDiscount = 0.0;
-                }
-            } catch (Exception e) {
-                // Nếu có lỗi khi validate, xóa voucher để tránh lỗi
-                cart.setAppliedVoucherCode(null);
-                voucherDiscount = 0.0;
+        recalcCartTotals(cart, findAppliedVoucher(cart));
+    }
+
+    // Tính lại giá bằng CartPricingEngine rồi chỉ ghi những dòng/giỏ có giá trị thay đổi.
+    // Các dòng thay đổi được flush cùng lúc trong 1 JDBC batch (hibernate.jdbc.batch_size).
+    private CartPricingEngine.Result recalcCartTotals(Cart cart, Voucher voucher) {
+        List<CartItem> items = cart.getCartItems() != null ? cart.getCartItems() : List.of();
+        List<CartPricingEngine.Line> lines = toPricingLines(items);
+
+        CartPricingEngine.Result result = cartPricingEngine.price(
+                lines, CartPricingEngine.VoucherTerms.of(voucher), LocalDate.now());
+
+        List<CartItem> changedItems = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            double unitPrice = lines.get(i).getUnitPrice();
+            double finalPrice = result.getLineTotal(i);
+            if (!sameAmount(item.getUnitPrice(), unitPrice) || !sameAmount(item.getFinalPrice(), finalPrice)) {
+                item.setUnitPrice(unitPrice);
+                item.setFinalPrice(finalPrice);
+                changedItems.add(item);
             }
         }
+        if (!changedItems.isEmpty()) {
+            cartItemRepository.saveAll(changedItems);
+        }
 
-        if (subtotal <= 0) {
-            cart.setAppliedVoucherCode(null);
-            voucherDiscount = 0.0;
+        boolean cartChanged = !sameAmount(cart.getSubtotal(), result.getSubtotal())
+                || !sameAmount(cart.getVoucherDiscount(), result.getVoucherDiscount())
+                || !sameAmount(cart.getTotalAmount(), result.getTotalAmount())
+                || !Objects.equals(cart.getAppliedVoucherCode(), result.getAppliedVoucherCode());
+        if (cartChanged) {
+            cart.setSubtotal(result.getSubtotal());
+            // Voucher không còn hợp lệ (hết hạn, không đủ giá trị tối thiểu, ...) thì tự gỡ khỏi giỏ
+            cart.setAppliedVoucherCode(result.getAppliedVoucherCode());
+            cart.setVoucherDiscount(result.getVoucherDiscount());
+            cart.setTotalAmount(result.getTotalAmount());
+            cartRepository.save(cart);
         }
-        cart.setVoucherDiscount(voucherDiscount);
+        return result;
+    }
 
-        double total = Math.max(0.0, subtotal - voucherDiscount);
-        // Làm tròn tổng tiền về đơn vị đồng
-        total = Math.round(total);
-        cart.setTotalAmount(total);
+    private List<CartPricingEngine.Line> toPricingLines(List<CartItem> items) {
+        List<CartPricingEngine.Line> lines = new ArrayList<>(items.size());
+        for (CartItem item : items) {
+            lines.add(toPricingLine(item));
+        }
+        return lines;
+    }
 
-        // Lưu lại cart với giá trị subtotal / totalAmount mới
-        cartRepository.save(cart);
+    private CartPricingEngine.Line toPricingLine(CartItem item) {
+        Product product = item.getProduct();
+        int quantity = item.getQuantity() != null ? item.getQuantity() : 0;
+        if (product == null) {
+            // Không còn product để tra giá: giữ đơn giá đã lưu
+            double unitPrice = item.getUnitPrice() != null ? item.getUnitPrice() : 0.0;
+            return new CartPricingEngine.Line(null, null, quantity, unitPrice);
+        }
+        // Tính lại đơn giá dựa trên cấu hình khuyến mãi hiện tại
+        return new CartPricingEngine.Line(
+                product.getId(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                quantity,
+                calculateUnitPrice(product, item.getVariant()));
+    }
+
+    // Tính tiền các dòng được chọn khi checkout với voucher đang áp trên giỏ. Voucher xét trên
+    // các dòng được chọn (giống quote), không phải cả giỏ, để số tiền xem trước khớp số tiền thanh toán
+    public CartPricingEngine.Result priceSelection(Cart cart, List<CartItem> selectedItems) {
+        return cartPricingEngine.price(toPricingLines(selectedItems),
+                CartPricingEngine.VoucherTerms.of(findAppliedVoucher(cart)), LocalDate.now());
+    }
+
+    private Voucher findAppliedVoucher(Cart cart) {
+        String code = cart.getAppliedVoucherCode();
+        if (code == null || code.isEmpty()) {
+            return null;
+        }
+        // Không tìm thấy voucher -> engine không nhận được voucher, mã sẽ bị gỡ khỏi giỏ
+        return voucherRepository.findByCode(code).orElse(null);
+    }
+
+    // Variant flash sale: tồn kho thực nằm trong bộ nhớ, stock_quantity trong DB được trừ trễ theo lô
+    private Integer variantStock(ProductVariant variant) {
+        Integer hotAvailable = flashSaleInventory.available(variant.getId());
+        return hotAvailable != null ? hotAvailable : variant.getStockQuantity();
+    }
+
+    private static boolean sameAmount(Double stored, double computed) {
+        return stored != null && stored == computed;
     }
 
     @Transactional
@@ -240,15 +250,6 @@ public class CartService {
         var voucher = voucherRepository.findByCode(code)
                 .orElseThrow(() -> new AppException(ErrorCode.VOUCHER_NOT_EXISTED));
 
-        if (!voucher.getIsActive() || voucher.getStatus() != VoucherStatus.APPROVED) {
-            throw new AppException(ErrorCode.VOUCHER_NOT_EXISTED);
-        }
-        LocalDate today = LocalDate.now();
-        if ((voucher.getStartDate() != null && today.isBefore(voucher.getStartDate()))
-                || (voucher.getExpiryDate() != null && today.isAfter(voucher.getExpiryDate()))) {
-            throw new AppException(ErrorCode.VOUCHER_NOT_EXISTED);
-        }
-
         // Lấy current user
         User currentUser = cart.getUser();
         if (currentUser == null) {
@@ -257,130 +258,110 @@ public class CartService {
                     .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
         }
 
-        // Lưu userId vào biến final để sử dụng trong lambda
-        final String userId = currentUser.getId();
-
-        boolean alreadyUsed = userRepository.existsByIdAndUsedVouchers_Id(userId, voucher.getId());
+        boolean alreadyUsed = userRepository.existsByIdAndUsedVouchers_Id(currentUser.getId(), voucher.getId());
         if (alreadyUsed) {
             throw new AppException(ErrorCode.VOUCHER_ALREADY_USED);
         }
 
-        recalcCartTotals(cart);
-
-        // Tính tổng giá trị đơn hàng có thể áp dụng voucher
-        double applicableSubtotal = calculateApplicableSubtotal(cart, voucher);
-
-        // Kiểm tra minOrderValue: giá trị đơn hàng phải >= minOrderValue (nếu có)
-        if (voucher.getMinOrderValue() != null && voucher.getMinOrderValue() > 0) {
-            double minValue = voucher.getMinOrderValue();
-            if (applicableSubtotal < minValue) {
-                throw new AppException(ErrorCode.INVALID_VOUCHER_MINIUM,
-                        String.format(
-                                "Voucher yêu cầu đơn hàng tối thiểu %.0f VND, đơn hàng hiện tại hiện có %.0f VND",
-                                minValue, applicableSubtotal));
-            }
+        // Tính giỏ hàng với voucher mới; không hợp lệ thì báo lỗi (transaction rollback, giỏ giữ nguyên)
+        CartPricingEngine.Result result = recalcCartTotals(cart, voucher);
+        if (result.getVoucherRejection() != null) {
+            throw toVoucherException(result, voucher);
         }
+        return cart;
+    }
 
-        // Kiểm tra maxOrderValue: giá trị đơn hàng phải <= maxOrderValue (nếu có)
-        if (voucher.getMaxOrderValue() != null && voucher.getMaxOrderValue() > 0
-                && applicableSubtotal > voucher.getMaxOrderValue()) {
-            throw new AppException(ErrorCode.INVALID_VOUCHER_MINIUM,
+    private AppException toVoucherException(CartPricingEngine.Result result, Voucher voucher) {
+        return switch (result.getVoucherRejection()) {
+            case NOT_AVAILABLE -> new AppException(ErrorCode.VOUCHER_NOT_EXISTED);
+            case EMPTY_CART -> new AppException(ErrorCode.CART_ITEM_NOT_EXISTED);
+            case BELOW_MIN_ORDER -> new AppException(ErrorCode.INVALID_VOUCHER_MINIUM,
+                    String.format(
+                            "Voucher yêu cầu đơn hàng tối thiểu %.0f VND, đơn hàng hiện tại hiện có %.0f VND",
+                            voucher.getMinOrderValue(), result.getApplicableSubtotal()));
+            case ABOVE_MAX_ORDER -> new AppException(ErrorCode.INVALID_VOUCHER_MINIUM,
                     "Giá trị đơn hàng vượt quá giá trị tối đa cho phép của voucher");
-        }
+            case OUT_OF_SCOPE -> new AppException(ErrorCode.INVALID_VOUCHER_SCOPE,
+                    "Không có sản phẩm nào trong giỏ hàng phù hợp với phạm vi áp dụng của voucher");
+        };
+    }
 
-        // Kiểm tra applyScope: đảm bảo có ít nhất một sản phẩm phù hợp với scope
-        if (voucher.getApplyScope() != null && voucher.getApplyScope() != DiscountApplyScope.ORDER) {
-            double scopeSubtotal = calculateApplicableSubtotal(cart, voucher);
-            if (scopeSubtotal <= 0) {
-                throw new AppException(ErrorCode.INVALID_VOUCHER_SCOPE,
-                        "Không có sản phẩm nào trong giỏ hàng phù hợp với phạm vi áp dụng của voucher");
+    // Báo giá xem trước cho trang checkout (chọn/bỏ chọn dòng, đổi phí ship, thử voucher).
+    // Chỉ đọc: không tạo/sửa cart hay cartItem, không lấy khóa dòng; voucher không hợp lệ
+    // thì trả lý do trong voucherMessage thay vì báo lỗi.
+    @Transactional(readOnly = true)
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public CartQuoteResponse quote(CartQuoteRequest request) {
+        String email = SecurityUtil.getAuthentication().getName();
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        Cart cart = cartRepository.findByUserId(user.getId())
+                .orElseThrow(() -> new AppException(ErrorCode.CART_ITEM_NOT_EXISTED));
+        List<CartItem> selectedItems = selectItems(cart.getCartItems(), request.getCartItemIds());
+
+        String code = request.getVoucherCode() != null && !request.getVoucherCode().isBlank()
+                ? request.getVoucherCode().trim()
+                : cart.getAppliedVoucherCode();
+        Voucher voucher = null;
+        String voucherMessage = null;
+        if (code != null && !code.isBlank()) {
+            voucher = voucherRepository.findByCode(code).orElse(null);
+            if (voucher == null) {
+                voucherMessage = ErrorCode.VOUCHER_NOT_EXISTED.getMessage();
+            } else if (userRepository.existsByIdAndUsedVouchers_Id(user.getId(), voucher.getId())) {
+                voucherMessage = ErrorCode.VOUCHER_ALREADY_USED.getMessage();
+                voucher = null;
             }
         }
 
-        // Tính giá trị giảm giá dựa trên loại giảm giá của voucher
-        double discountValue = voucher.getDiscountValue();
-        double discount;
-        if (voucher.getDiscountValueType() == DiscountValueType.PERCENTAGE) {
-            discount = applicableSubtotal * (discountValue / 100.0);
-        } else {
-            discount = discountValue;
-        }
-
-        // Discount > MaxDiscountValue của voucher, set MaxDiscountValue của voucher
-        if (voucher.getMaxDiscountValue() != null && voucher.getMaxDiscountValue() > 0) {
-            discount = Math.min(discount, voucher.getMaxDiscountValue());
-        }
-
-        // Discount > applicableSubtotal, set applicableSubtotal
-        discount = Math.min(discount, applicableSubtotal);
-
-        // Làm tròn tiền giảm giá về đơn vị đồng
-        discount = Math.round(discount);
-
-        // Lấy tổng giá trị đơn hàng để tính toán cuối cùng
-        double fullSubtotal = cart.getSubtotal();
-
-        cart.setAppliedVoucherCode(voucher.getCode());
-        cart.setVoucherDiscount(discount);
-        // Tổng sau voucher cũng làm tròn về đồng
-        cart.setTotalAmount((double) Math.round(Math.max(0.0, fullSubtotal - discount)));
-        return cartRepository.save(cart);
+        List<CartPricingEngine.Line> lines = toPricingLines(selectedItems);
+        CartPricingEngine.Result result = cartPricingEngine.price(
+                lines, CartPricingEngine.VoucherTerms.of(voucher), LocalDate.now());
+        if (result.getVoucherRejection() != null) {
+            voucherMessage = toVoucherException(result, voucher).getMessage();
+        }
+
+        double shippingFee = request.getShippingFee() != null
+                ? Math.round(Math.max(0.0, request.getShippingFee()))
+                : 0.0;
+        // Cùng công thức với tổng đơn hàng khi checkout (OrderService dùng priceSelection)
+        double totalAmount = result.totalWithShipping(shippingFee);
+
+        List<CartItemResponse> items = new ArrayList<>(selectedItems.size());
+        for (int i = 0; i < selectedItems.size(); i++) {
+            CartItemResponse item = cartMapper.toItemResponse(selectedItems.get(i));
+            item.setUnitPrice(lines.get(i).getUnitPrice());
+            item.setFinalPrice(result.getLineTotal(i));
+            items.add(item);
+        }
+
+        return CartQuoteResponse.builder()
+                .subtotal(result.getSubtotal())
+                .appliedVoucherCode(result.getAppliedVoucherCode())
+                .voucherDiscount(result.getVoucherDiscount())
+                .voucherMessage(voucherMessage)
+                .shippingFee(shippingFee)
+                .totalAmount(totalAmount)
+                .items(items)
+                .build();
     }
 
-    // Tính tổng giá trị đơn hàng có thể áp dụng voucher dựa trên phạm vi áp dụng
-    // của voucher
-    private double calculateApplicableSubtotal(Cart cart, Voucher voucher) {
-        if (voucher.getApplyScope() == null || voucher.getApplyScope() == DiscountApplyScope.ORDER) {
-            // Áp dụng cho toàn bộ đơn hàng
-            double subtotal = cart.getSubtotal() != null ? cart.getSubtotal() : 0.0;
-            return Math.round(subtotal);
+    // Cùng quy tắc chọn dòng với checkout: không truyền id = cả giỏ
+    private List<CartItem> selectItems(List<CartItem> allItems, List<String> cartItemIds) {
+        if (allItems == null || allItems.isEmpty()) {
+            throw new AppException(ErrorCode.CART_ITEM_NOT_EXISTED);
         }
-
-        if (cart.getCartItems() == null || cart.getCartItems().isEmpty()) {
-            return 0.0;
-        }
-
-        double applicableSubtotal = cart.getCartItems().stream()
-                .filter(item -> {
-                    if (item == null) {
-                        return false;
-                    }
-
-                    Product product = item.getProduct();
-                    if (product == null) {
-                        return false;
-                    }
-
-                    DiscountApplyScope scope = voucher.getApplyScope();
-                    if (scope == DiscountApplyScope.PRODUCT) {
-                        // Nếu sản phẩm có nằm trong danh sách sản phẩm của voucher, return true
-                        if (voucher.getProductApply() == null || voucher.getProductApply().isEmpty()) {
-                            return false;
-                        }
-                        return voucher.getProductApply().stream()
-                                .anyMatch(vp -> vp != null && vp.getId() != null && vp.getId().equals(product.getId()));
-                    } else if (scope == DiscountApplyScope.CATEGORY) {
-                        // Nếu danh mục sản phẩm có nằm trong danh sách danh mục của voucher, return
-                        // true
-                        Category productCategory = product.getCategory();
-                        if (productCategory == null || voucher.getCategoryApply() == null
-                                || voucher.getCategoryApply().isEmpty()) {
-                            return false;
-                        }
-                        return voucher.getCategoryApply().stream()
-                                .anyMatch(vc -> vc != null && vc.getId() != null
-                                        && vc.getId().equals(productCategory.getId()));
-                    }
-                    return false;
-                })
-                .mapToDouble(item -> {
-                    Double finalPrice = item.getFinalPrice();
-                    return finalPrice != null ? finalPrice : 0.0;
-                })
-                .sum();
-
-        // Làm tròn về đơn vị đồng
-        return Math.round(applicableSubtotal);
+        if (cartItemIds == null || cartItemIds.isEmpty()) {
+            return allItems;
+        }
+        Set<String> idSet = new HashSet<>(cartItemIds);
+        List<CartItem> selected = allItems.stream()
+                .filter(item -> idSet.contains(item.getId()))
+                .toList();
+        if (selected.isEmpty()) {
+            throw new AppException(ErrorCode.CART_ITEM_NOT_EXISTED);
+        }
+        return selected;
     }
 
     @Transactional
@@ -402,7 +383,7 @@ public class CartService {
         Product product = cartItem.getProduct();
         Integer stockQuantity = null;
         if (cartItem.getVariant() != null) {
-            stockQuantity = cartItem.getVariant().getStockQuantity();
+            stockQuantity = variantStock(cartItem.getVariant());
         } else if (product != null && product.getInventory() != null) {
             stockQuantity = product.getInventory().getStockQuantity();
         }
@@ -412,11 +393,8 @@ public class CartService {
             finalQuantity = stockQuantity;
         }
 
+        // Thành tiền được tính lại trong recalcCartTotals, thay đổi ghi cùng batch khi flush
         cartItem.setQuantity(finalQuantity);
-        double finalPrice = cartItem.getQuantity() * cartItem.getUnitPrice();
-        cartItem.setFinalPrice(finalPrice);
-
-        cartItemRepository.save(cartItem);
         recalcCartTotals(cart);
         return cart;
     }
@@ -480,19 +458,21 @@ public class CartService {
             return;
         }
 
-        // Xóa items khỏi collection trước để tránh lỗi khi recalcCartTotals
-        if (cart.getCartItems() != null && !cart.getCartItems().isEmpty()) {
-            cart.getCartItems().removeIf(item -> cartItemIds.contains(item.getId()));
+        // 1 câu DELETE cho mọi dòng đã đặt hàng, chỉ trong giỏ của user này
+        Set<String> idSet = new HashSet<>(cartItemIds);
+        int removed = cartItemRepository.deleteByCartIdAndIdIn(cart.getId(), idSet);
+        if (removed == 0) {
+            return;
         }
 
-        // Sau đó mới xóa items khỏi DB
-        cartItemIds.forEach(id -> cartItemRepository.findById(id).ifPresent(item -> {
-            if (item.getCart() != null && item.getCart().getId().equals(cart.getId())) {
-                cartItemRepository.delete(item);
-            }
-        }));
+        // Dòng đã xóa bằng JPQL không được để orphanRemoval xóa lại (DELETE thứ 2 lỗi vì 0 dòng):
+        // tách cart (cascade cả các dòng) khỏi persistence context, chỉ sửa collection trong bộ nhớ
+        entityManager.detach(cart);
+        if (cart.getCartItems() != null && Hibernate.isInitialized(cart.getCartItems())) {
+            cart.getCartItems().removeIf(item -> idSet.contains(item.getId()));
+        }
 
-        // Tính lại tổng tiền sau khi đã loại bỏ items
-        recalcCartTotals(cart);
+        // Tính lại tổng tiền trên cart load lại từ DB (chỉ còn các dòng chưa đặt)
+        cartRepository.findByUserId(user.getId()).ifPresent(this::recalcCartTotals);
     }
 }
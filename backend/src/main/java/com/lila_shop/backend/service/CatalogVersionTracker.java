@@ -0,0 +1,118 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.event.BannerChangedEvent;
+import com.lila_shop.backend.event.ProductChangedEvent;
+import com.lila_shop.backend.event.PromotionChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Số phiên bản dữ liệu catalog theo từng nhóm endpoint, dùng làm ETag/Last-Modified cho GET.
+// Tăng sau khi transaction ghi dữ liệu commit. Counter chỉ nằm trong node hiện tại nên ETag còn gắn
+// với khoảng thời gian max-stale: thay đổi từ node khác được nhận muộn nhất sau khoảng này.
+@Component
+public class CatalogVersionTracker {
+
+    public enum Area {
+        PRODUCT("p"),
+        CATEGORY("c"),
+        BANNER("b");
+
+        private final String prefix;
+
+        Area(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    // Phân biệt các lần khởi động (counter reset về 0 sau restart)
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<Area, AtomicLong> versions = new EnumMap<>(Area.class);
+    private final Map<Area, AtomicLong> lastModified = new EnumMap<>(Area.class);
+
+    private final long maxStaleMs;
+
+    public CatalogVersionTracker(@Value("${app.http-cache.max-stale-ms:60000}") long maxStaleMs) {
+        this.maxStaleMs = Math.max(1000, maxStaleMs);
+        long now = System.currentTimeMillis();
+        for (Area area : Area.values()) {
+            versions.put(area, new AtomicLong());
+            lastModified.put(area, new AtomicLong(now));
+        }
+    }
+
+    // Sản phẩm thay đổi: banner cũng hiển thị tên sản phẩm, category hiển thị productCount
+    // (tạo/xóa/đổi category của sản phẩm)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        bumpNow(Area.PRODUCT, Area.CATEGORY, Area.BANNER);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPromotionChanged(PromotionChangedEvent event) {
+        bumpNow(Area.PRODUCT);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBannerChanged(BannerChangedEvent event) {
+        bumpNow(Area.BANNER);
+    }
+
+    // Gọi trong transaction thì tăng sau khi commit, tránh client nhận ETag mới kèm dữ liệu cũ
+    public void bump(Area... areas) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpNow(areas);
+                }
+            });
+        } else {
+            bumpNow(areas);
+        }
+    }
+
+    // principal: response khác nhau theo người dùng (vd: /products/my-products)
+    public String etag(Area area, String principal) {
+        return "W/\"" + area.prefix + "-" + bootId
+                + "-" + versions.get(area).get()
+                + "-" + Long.toString(System.currentTimeMillis() / maxStaleMs, 36)
+                + "-" + principalDigest(principal) + "\"";
+    }
+
+    // SHA-256 rút gọn (128 bit): hashCode 32 bit có thể trùng giữa 2 user, user này nhận 304 cho bản của user kia
+    private static String principalDigest(String principal) {
+        if (principal == null) return "0";
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(principal.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public long lastModified(Area area) {
+        long now = System.currentTimeMillis();
+        return Math.max(lastModified.get(area).get(), now - now % maxStaleMs);
+    }
+
+    private void bumpNow(Area... areas) {
+        long now = System.currentTimeMillis();
+        for (Area area : areas) {
+            versions.get(area).incrementAndGet();
+            lastModified.get(area).set(now);
+        }
+    }
+}
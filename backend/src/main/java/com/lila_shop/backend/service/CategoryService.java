@@ -29,6 +29,10 @@ public class CategoryService {
 
     CategoryRepository categoryRepository;
     CategoryMapper categoryMapper;
+    CategoryTreeCache categoryTreeCache;
+    CatalogVersionTracker catalogVersionTracker;
+    ProductDetailCache productDetailCache;
+    ProductSuggestIndex productSuggestIndex;
 
     @Transactional
     @PreAuthorize("hasRole('ADMIN')")
@@ -59,6 +63,9 @@ public class CategoryService {
 
         try {
             Category savedCategory = categoryRepository.save(category);
+            categoryTreeCache.invalidate();
+            productSuggestIndex.markDirty();
+            catalogVersionTracker.bump(CatalogVersionTracker.Area.CATEGORY);
             log.info("Category created with ID: {}", savedCategory.getId());
             return categoryMapper.toResponse(savedCategory);
         } catch (DataIntegrityViolationException e) {
@@ -137,6 +144,11 @@ public class CategoryService {
 
         try {
             Category savedCategory = categoryRepository.save(category);
+            categoryTreeCache.invalidate();
+            productSuggestIndex.markDirty();
+            // Tên danh mục hiển thị trong ProductResponse
+            catalogVersionTracker.bump(CatalogVersionTracker.Area.CATEGORY, CatalogVersionTracker.Area.PRODUCT);
+            productDetailCache.invalidateAll();
             return categoryMapper.toResponse(savedCategory);
         } catch (DataIntegrityViolationException e) {
             log.error("Data integrity violation when updating category", e);
@@ -175,6 +187,9 @@ public class CategoryService {
         }
 
         categoryRepository.delete(category);
+        categoryTreeCache.invalidate();
+        productSuggestIndex.markDirty();
+        catalogVersionTracker.bump(CatalogVersionTracker.Area.CATEGORY);
         log.info("Category deleted: {}", categoryId);
     }
 }
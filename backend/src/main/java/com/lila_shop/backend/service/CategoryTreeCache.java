@@ -0,0 +1,103 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Cây danh mục trong bộ nhớ: categoryId -> tập id của chính nó và toàn bộ danh mục con cháu.
+// Build bằng 1 query, bị xóa khi CategoryService thay đổi dữ liệu và build lại ở lần đọc tiếp theo.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CategoryTreeCache {
+    private final CategoryRepository categoryRepository;
+
+    private volatile Map<String, Set<String>> descendants;
+    // Tăng mỗi lần xóa cây; cây load xong chỉ được gán nếu không có lần xóa nào trong lúc load
+    // (tránh gán lại cây đọc từ dữ liệu trước commit sau khi afterCommit đã xóa)
+    private volatile long generation;
+
+    // Bao gồm cả categoryId; id không tồn tại thì trả về chính nó
+    public Set<String> getDescendantIds(String categoryId) {
+        Map<String, Set<String>> tree = descendants;
+        if (tree == null) {
+            long loadGeneration = generation;
+            tree = load();
+            publish(tree, loadGeneration);
+        }
+        return tree.getOrDefault(categoryId, Set.of(categoryId));
+    }
+
+    public void invalidate() {
+        clear();
+        // Xóa lại sau commit để không giữ cây được build từ dữ liệu cũ trong lúc transaction chưa commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        }
+    }
+
+    // Làm mới định kỳ để nhận thay đổi danh mục từ node khác
+    @Scheduled(fixedDelayString = "${app.category-tree.refresh-ms:300000}")
+    public void refresh() {
+        clear();
+    }
+
+    private synchronized void clear() {
+        generation++;
+        descendants = null;
+    }
+
+    private synchronized void publish(Map<String, Set<String>> tree, long loadGeneration) {
+        if (generation == loadGeneration) {
+            descendants = tree;
+        }
+    }
+
+    private Map<String, Set<String>> load() {
+        Map<String, List<String>> children = new HashMap<>();
+        List<String> categoryIds = new ArrayList<>();
+        for (Object[] row : categoryRepository.findAllIdAndParentId()) {
+            String id = (String) row[0];
+            String parentId = (String) row[1];
+            categoryIds.add(id);
+            if (parentId != null) {
+                children.computeIfAbsent(parentId, k -> new ArrayList<>()).add(id);
+            }
+        }
+
+        Map<String, Set<String>> tree = new HashMap<>();
+        for (String categoryId : categoryIds) {
+            // Duyệt BFS, tập visited chặn vòng lặp nếu dữ liệu parent bị sai
+            Set<String> ids = new LinkedHashSet<>();
+            Deque<String> queue = new ArrayDeque<>();
+            queue.add(categoryId);
+            while (!queue.isEmpty()) {
+                String id = queue.poll();
+                if (ids.add(id)) {
+                    queue.addAll(children.getOrDefault(id, List.of()));
+                }
+            }
+            tree.put(categoryId, Set.copyOf(ids));
+        }
+        log.info("Category tree loaded: {} categories", categoryIds.size());
+        return tree;
+    }
+}
@@ -0,0 +1,275 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.enums.OrderStatus;
+import com.lila_shop.backend.repository.OrderItemRepository;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// "Thường được mua cùng": ma trận đồng xuất hiện thưa giữa các sản phẩm trong cùng 1 đơn hàng.
+// productId được đánh số int, mỗi dòng là bảng băm int -> int (sản phẩm đi kèm -> số đơn mua cùng).
+// Cộng dần khi tạo đơn, trừ khi hủy/hoàn tiền; build lại toàn bộ từ order_items mỗi đêm.
+// Top sản phẩm liên quan được tính 1 lần và giữ lại tới khi dòng đó thay đổi.
+@Slf4j
+@Component
+public class CoPurchaseIndex {
+    // Đơn quá nhiều sản phẩm (mua sỉ) tạo O(n^2) cặp mà ít ý nghĩa, chỉ lấy n sản phẩm đầu
+    private static final int MAX_ITEMS_PER_ORDER = 50;
+    private static final List<OrderStatus> EXCLUDED_STATUSES = List.of(OrderStatus.CANCELLED, OrderStatus.REFUNDED);
+
+    // Bảng băm địa chỉ mở int -> int, key = -1 là ô trống. Số đếm về 0 thì giữ ô (bỏ qua khi xếp hạng)
+    private static final class CountRow {
+        int[] keys = emptyKeys(8);
+        int[] counts = new int[8];
+        int size;
+
+        void add(int key, int delta) {
+            if ((size + 1) * 4 > keys.length * 3) grow();
+            int slot = slot(keys, key);
+            if (keys[slot] == -1) {
+                if (delta <= 0) return;
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot] = Math.max(0, counts[slot] + delta);
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = emptyKeys(oldKeys.length * 2);
+            counts = new int[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == -1) continue;
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+
+        private static int slot(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B9) >>> 1 & mask;
+            while (keys[slot] != -1 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static int[] emptyKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+    }
+
+    private static final class State {
+        Map<String, Integer> indexOf = new HashMap<>();
+        List<String> productIds = new ArrayList<>();
+        List<CountRow> rows = new ArrayList<>();
+
+        int index(String productId) {
+            Integer index = indexOf.get(productId);
+            if (index != null) return index;
+            productIds.add(productId);
+            rows.add(new CountRow());
+            indexOf.put(productId, productIds.size() - 1);
+            return productIds.size() - 1;
+        }
+
+        void record(Collection<String> orderProductIds, int delta) {
+            int[] indexes = orderProductIds.stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .limit(MAX_ITEMS_PER_ORDER)
+                    .mapToInt(this::index)
+                    .toArray();
+            for (int i = 0; i < indexes.length; i++) {
+                for (int j = i + 1; j < indexes.length; j++) {
+                    rows.get(indexes[i]).add(indexes[j], delta);
+                    rows.get(indexes[j]).add(indexes[i], delta);
+                }
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static class PendingOrder {
+        Collection<String> productIds;
+        int delta;
+    }
+
+    private final OrderItemRepository orderItemRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxRelated;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state = new State();
+    // productIndex -> top sản phẩm liên quan (productIndex), xóa khi dòng tương ứng thay đổi
+    private final Map<Integer, int[]> topCache = new ConcurrentHashMap<>();
+
+    // Đơn phát sinh trong lúc build lại: áp dụng vào State mới trước khi thay thế
+    private List<PendingOrder> pending;
+
+    public CoPurchaseIndex(
+            OrderItemRepository orderItemRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.co-purchase.max-related:20}") int maxRelated) {
+        this.orderItemRepository = orderItemRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxRelated = Math.max(1, maxRelated);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(cron = "${app.co-purchase.rebuild-cron:0 30 3 * * *}")
+    public void rebuild() {
+        State built = null;
+        try {
+            built = readOnlyTransaction.execute(status -> load());
+        } catch (Exception e) {
+            log.error("Cannot build co-purchase index: {}", e.getMessage(), e);
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (built != null) {
+                for (PendingOrder order : pending) {
+                    built.record(order.productIds, order.delta);
+                }
+                state = built;
+                topCache.clear();
+                log.info("Co-purchase index built: {} products", built.productIds.size());
+            }
+            pending = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Gọi khi tạo đơn (delta = 1) hoặc hủy/hoàn tiền (delta = -1); trong transaction thì áp dụng sau commit
+    public void recordOrder(Collection<String> productIds, int delta) {
+        if (productIds == null || productIds.size() < 2) return;
+        List<String> snapshot = List.copyOf(new LinkedHashSet<>(productIds));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(snapshot, delta);
+                }
+            });
+        } else {
+            apply(snapshot, delta);
+        }
+    }
+
+    // productId liên quan, xếp theo số đơn mua cùng giảm dần
+    public List<String> related(String productId, int limit) {
+        lock.readLock().lock();
+        try {
+            Integer index = state.indexOf.get(productId);
+            if (index == null) return List.of();
+            int[] top = topCache.computeIfAbsent(index, this::computeTop);
+            List<String> result = new ArrayList<>(Math.min(limit, top.length));
+            for (int i = 0; i < top.length && i < limit; i++) {
+                result.add(state.productIds.get(top[i]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(List<String> productIds, int delta) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) pending.add(new PendingOrder(productIds, delta));
+            state.record(productIds, delta);
+            for (String productId : productIds) {
+                Integer index = state.indexOf.get(productId);
+                if (index != null) topCache.remove(index);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private State load() {
+        State built = new State();
+        try (Stream<Object[]> rows = orderItemRepository.streamOrderProductPairs(EXCLUDED_STATUSES)) {
+            String currentOrderId = null;
+            Set<String> orderProductIds = new LinkedHashSet<>();
+            Iterator<Object[]> iterator = rows.iterator();
+            // Snapshot của transaction được lấy ở lần đọc đầu tiên: chỉ ghi nhận đơn commit sau thời điểm này,
+            // đơn commit trước đó đã nằm trong kết quả đọc (mở pending sớm hơn sẽ đếm 2 lần)
+            iterator.hasNext();
+            openPending();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                String orderId = (String) row[0];
+                if (!orderId.equals(currentOrderId)) {
+                    built.record(orderProductIds, 1);
+                    orderProductIds.clear();
+                    currentOrderId = orderId;
+                }
+                orderProductIds.add((String) row[1]);
+            }
+            built.record(orderProductIds, 1);
+        }
+        return built;
+    }
+
+    private void openPending() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int[] computeTop(int index) {
+        CountRow row = state.rows.get(index);
+        // Min-heap giữ maxRelated phần tử lớn nhất: [count, productIndex]
+        PriorityQueue<int[]> heap = new PriorityQueue<>((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0])
+                : Integer.compare(b[1], a[1]));
+        for (int i = 0; i < row.keys.length; i++) {
+            if (row.keys[i] == -1 || row.counts[i] <= 0) continue;
+            heap.add(new int[] {row.counts[i], row.keys[i]});
+            if (heap.size() > maxRelated) heap.poll();
+        }
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = heap.poll()[1];
+        }
+        return top;
+    }
+}
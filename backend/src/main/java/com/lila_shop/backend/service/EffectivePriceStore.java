@@ -0,0 +1,180 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.entity.Product;
+import com.lila_shop.backend.entity.ProductVariant;
+import com.lila_shop.backend.entity.Promotion;
+import com.lila_shop.backend.event.ProductChangedEvent;
+import com.lila_shop.backend.repository.ProductRepository;
+import com.lila_shop.backend.repository.ProductVariantRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Giá bán hiện hành theo product và variant, kèm promotion đang thắng và khoảng hiệu lực của nó.
+// PromotionService/ProductService ghi giá vào DB rồi phát ProductChangedEvent, store tính lại đúng product đó.
+// Chỉ dùng cho danh sách/chi tiết sản phẩm; giỏ hàng và checkout tính giá từ entity đã load
+// trong transaction (unitPrice) vì store có thể trễ so với DB (node khác, rebuild định kỳ).
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EffectivePriceStore {
+
+    @Getter
+    @AllArgsConstructor
+    public static class EffectivePrice {
+        double price;
+        double discountValue;
+        String promotionId;
+        LocalDate validFrom;
+        LocalDate validUntil;
+        // unitPrice * (1 + tax): giá khi promotion hết hiệu lực
+        double basePrice;
+
+        // Ngoài khoảng hiệu lực của promotion (job hết hạn chưa chạy) thì trả về giá gốc
+        public EffectivePrice resolve(LocalDate today) {
+            if (promotionId == null) return this;
+            boolean started = validFrom == null || !validFrom.isAfter(today);
+            boolean notExpired = validUntil == null || !validUntil.isBefore(today);
+            return started && notExpired ? this : new EffectivePrice(basePrice, 0, null, null, null, basePrice);
+        }
+    }
+
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
+
+    private final Map<String, EffectivePrice> productPrices = new ConcurrentHashMap<>();
+    private final Map<String, Double> variantPrices = new ConcurrentHashMap<>();
+    // Id product/variant được cập nhật từ event trong lúc rebuild đang đọc DB:
+    // bản đọc của rebuild có thể cũ hơn nên không được ghi đè các id này
+    private volatile Set<String> changedDuringRebuild;
+    private final Object rebuildLock = new Object();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    // Rebuild định kỳ để nhận thay đổi giá từ node khác
+    @Scheduled(fixedDelayString = "${app.effective-price.refresh-ms:300000}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            changedDuringRebuild = ConcurrentHashMap.newKeySet();
+            try {
+                Map<String, EffectivePrice> newProductPrices = new ConcurrentHashMap<>();
+                for (Object[] row : productRepository.findAllPriceRows()) {
+                    newProductPrices.put((String) row[0], toEffectivePrice(
+                            (Double) row[1], (Double) row[2], (Double) row[3], (Double) row[4],
+                            (String) row[5], (LocalDate) row[6], (LocalDate) row[7]));
+                }
+                Map<String, Double> newVariantPrices = new ConcurrentHashMap<>();
+                for (Object[] row : productVariantRepository.findAllPriceRows()) {
+                    if (row[1] != null) newVariantPrices.put((String) row[0], (Double) row[1]);
+                }
+
+                publish(newProductPrices, newVariantPrices);
+                log.info("Effective price store built: {} products, {} variants",
+                        newProductPrices.size(), newVariantPrices.size());
+            } catch (Exception e) {
+                log.error("Cannot build effective price store: {}", e.getMessage(), e);
+            } finally {
+                changedDuringRebuild = null;
+            }
+        }
+    }
+
+    private synchronized void publish(Map<String, EffectivePrice> newProductPrices, Map<String, Double> newVariantPrices) {
+        Set<String> changed = changedDuringRebuild;
+        productPrices.keySet().removeIf(id -> !newProductPrices.containsKey(id) && !changed.contains(id));
+        newProductPrices.forEach((id, price) -> {
+            if (!changed.contains(id)) productPrices.put(id, price);
+        });
+        variantPrices.keySet().removeIf(id -> !newVariantPrices.containsKey(id) && !changed.contains(id));
+        newVariantPrices.forEach((id, price) -> {
+            if (!changed.contains(id)) variantPrices.put(id, price);
+        });
+    }
+
+    // Tính lại giá của 1 product (và variants) sau khi transaction ghi giá commit
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // Đánh dấu trước khi đọc DB để rebuild đang chạy không ghi đè bằng bản cũ hơn
+        markChanged(event.getProductId());
+        productRepository
+                .findById(event.getProductId())
+                .ifPresentOrElse(this::update, () -> remove(event.getProductId()));
+    }
+
+    public void update(Product product) {
+        markChanged(product.getId());
+        List<ProductVariant> variants = productVariantRepository.findByProductId(product.getId());
+        variants.forEach(variant -> markChanged(variant.getId()));
+        apply(product, variants);
+    }
+
+    private synchronized void apply(Product product, List<ProductVariant> variants) {
+        productPrices.put(product.getId(), toEffectivePrice(product));
+        for (ProductVariant variant : variants) {
+            if (variant.getPrice() != null) {
+                variantPrices.put(variant.getId(), variant.getPrice());
+            } else {
+                variantPrices.remove(variant.getId());
+            }
+        }
+    }
+
+    public synchronized void remove(String productId) {
+        markChanged(productId);
+        productPrices.remove(productId);
+    }
+
+    private void markChanged(String id) {
+        Set<String> changed = changedDuringRebuild;
+        if (changed != null && id != null) changed.add(id);
+    }
+
+    public EffectivePrice getProductPrice(String productId) {
+        EffectivePrice price = productPrices.get(productId);
+        return price != null ? price.resolve(LocalDate.now()) : null;
+    }
+
+    // Đơn giá tính tiền cho 1 dòng hàng, từ entity đã load trong transaction (không đọc store):
+    // giá variant nếu có, ngược lại giá hiện hành của product (giá gốc nếu promotion đã ngoài hiệu lực)
+    public static double unitPrice(Product product, ProductVariant variant) {
+        if (variant != null && variant.getPrice() != null) return variant.getPrice();
+        return toEffectivePrice(product).resolve(LocalDate.now()).getPrice();
+    }
+
+    private static EffectivePrice toEffectivePrice(Product product) {
+        Promotion promotion = product.getPromotion();
+        return toEffectivePrice(
+                product.getUnitPrice(), product.getTax(), product.getPrice(), product.getDiscountValue(),
+                promotion != null ? promotion.getId() : null,
+                promotion != null ? promotion.getStartDate() : null,
+                promotion != null ? promotion.getExpiryDate() : null);
+    }
+
+    private static EffectivePrice toEffectivePrice(
+            Double unitPrice, Double tax, Double price, Double discountValue,
+            String promotionId, LocalDate validFrom, LocalDate validUntil) {
+        double basePrice = (unitPrice != null ? unitPrice : 0.0) * (1 + (tax != null ? tax : 0.0));
+        return new EffectivePrice(
+                price != null ? price : basePrice,
+                discountValue != null ? discountValue : 0.0,
+                promotionId,
+                validFrom,
+                validUntil,
+                basePrice);
+    }
+}
@@ -6,12 +6,14 @@ import com.lila_shop.backend.entity.Promotion;
 import com.lila_shop.backend.entity.Voucher;
 import com.lila_shop.backend.enums.PromotionStatus;
 import com.lila_shop.backend.enums.VoucherStatus;
+import com.lila_shop.backend.event.PromotionChangedEvent;
 import com.lila_shop.backend.repository.ExpiredPromotionRepository;
 import com.lila_shop.backend.repository.ExpiredVoucherRepository;
 import com.lila_shop.backend.repository.PromotionRepository;
 import com.lila_shop.backend.repository.VoucherRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -30,6 +32,7 @@ public class ExpirationService {
     private final ExpiredVoucherRepository expiredVoucherRepository;
     private final ExpiredPromotionRepository expiredPromotionRepository;
     private final PromotionService promotionService;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Chạy mỗi ngày lúc 0:00 để kiểm tra và chuyển voucher/promotion hết hạn vào bảng hết hạn
     // Cron expression: giây phút giờ ngày tháng thứ (0 0 0 * * * = mỗi ngày lúc 0:00)
@@ -61,6 +64,7 @@ public class ExpirationService {
                 // Activate promotion
                 promotion.setIsActive(true);
                 promotionRepository.save(promotion);
+                eventPublisher.publishEvent(new PromotionChangedEvent(promotion.getId()));
 
                 // Apply promotion vào các sản phẩm target
                 promotionService.applyPromotionToTargets(promotion);
@@ -0,0 +1,370 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.entity.HotStockReservation;
+import com.lila_shop.backend.enums.HotStockReservationStatus;
+import com.lila_shop.backend.exception.AppException;
+import com.lila_shop.backend.exception.ErrorCode;
+import com.lila_shop.backend.repository.HotStockReservationRepository;
+import com.lila_shop.backend.repository.ProductVariantRepository;
+import com.lila_shop.backend.util.StripedStockCounter;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+// Chế độ flash sale cho các variant được admin đánh dấu "hot".
+// Tồn kho của variant hot nằm trong StripedStockCounter: checkout trừ ngay trong bộ nhớ, không UPDATE
+// cùng 1 dòng product_variants; checkout MoMo được giữ hàng có thời hạn trong lúc khách thanh toán.
+// Mỗi phần đã trừ được ghi 1 dòng hot_stock_reservations (INSERT, không tranh chấp) trong transaction
+// của đơn hàng; job ghi theo lô trừ tổng vào stock_quantity và xóa các dòng đó trong cùng transaction.
+// Vì vậy luôn có: còn bán được = stock_quantity - tổng các dòng, khởi động lại tính lại đúng từ DB.
+// Bộ đếm nằm trong bộ nhớ của 1 node: chế độ này giả định các checkout chạy trên 1 instance.
+@Slf4j
+@Component
+public class FlashSaleInventory {
+    private static final long DISABLE_WAIT_MS = 30_000;
+
+    private static final class HotVariant {
+        final StripedStockCounter counter;
+        // Số thao tác giữ/trừ hàng có transaction chưa kết thúc
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile boolean closed;
+
+        HotVariant(StripedStockCounter counter) {
+            this.counter = counter;
+        }
+    }
+
+    // Phần giữ hàng của 1 checkout MoMo (holdKey = mã đơn hàng): variantId -> số lượng
+    @AllArgsConstructor
+    private static class Hold {
+        LocalDateTime expiresAt;
+        Map<String, Integer> quantities;
+    }
+
+    private final HotStockReservationRepository reservationRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final CatalogVersionTracker catalogVersionTracker;
+    private final TransactionTemplate newTransaction;
+    private final int stripes;
+    private final long holdTtlMs;
+    private final int flushBatchSize;
+
+    private final Map<String, HotVariant> variants = new ConcurrentHashMap<>();
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+
+    public FlashSaleInventory(
+            HotStockReservationRepository reservationRepository,
+            ProductVariantRepository productVariantRepository,
+            CatalogVersionTracker catalogVersionTracker,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.flash-sale.stripes:16}") int stripes,
+            @Value("${app.flash-sale.hold-ttl-ms:900000}") long holdTtlMs,
+            @Value("${app.flash-sale.flush-batch-size:500}") int flushBatchSize) {
+        this.reservationRepository = reservationRepository;
+        this.productVariantRepository = productVariantRepository;
+        this.catalogVersionTracker = catalogVersionTracker;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.stripes = Math.max(1, stripes);
+        this.holdTtlMs = holdTtlMs;
+        this.flushBatchSize = Math.max(1, flushBatchSize);
+    }
+
+    // Dựng lại bộ đếm và các phần giữ hàng từ DB: stock_quantity trừ các dòng COMMITTED (chưa ghi)
+    // và HELD còn hạn; HELD đã hết hạn trong lúc dừng thì xóa (trả lại hàng)
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void recover() {
+        Map<String, Integer> available = new HashMap<>();
+        Map<String, Hold> recoveredHolds = new HashMap<>();
+        try {
+            newTransaction.executeWithoutResult(status -> {
+                int expired = reservationRepository.deleteExpiredHolds(LocalDateTime.now());
+                if (expired > 0) log.info("Released {} expired flash sale holds", expired);
+
+                for (Object[] row : productVariantRepository.findHotStockRows()) {
+                    available.put((String) row[0], row[1] != null ? ((Number) row[1]).intValue() : 0);
+                }
+                if (available.isEmpty()) return;
+
+                for (HotStockReservation reservation : reservationRepository.findByStatusAndVariantIdIn(
+                        HotStockReservationStatus.COMMITTED, available.keySet())) {
+                    available.merge(reservation.getVariantId(), -reservation.getQuantity(), Integer::sum);
+                }
+                for (HotStockReservation reservation : reservationRepository.findByStatusAndVariantIdIn(
+                        HotStockReservationStatus.HELD, available.keySet())) {
+                    available.merge(reservation.getVariantId(), -reservation.getQuantity(), Integer::sum);
+                    recoveredHolds
+                            .computeIfAbsent(reservation.getHoldKey(),
+                                    k -> new Hold(reservation.getExpiresAt(), new ConcurrentHashMap<>()))
+                            .quantities.merge(reservation.getVariantId(), reservation.getQuantity(), Integer::sum);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Cannot recover flash sale inventory: {}", e.getMessage(), e);
+            return;
+        }
+
+        available.forEach((variantId, quantity) ->
+                variants.put(variantId, new HotVariant(new StripedStockCounter(quantity, stripes))));
+        holds.putAll(recoveredHolds);
+        if (!available.isEmpty()) {
+            log.info("Flash sale inventory recovered: {} variants, {} holds", available.size(), recoveredHolds.size());
+        }
+    }
+
+    public boolean isHot(String variantId) {
+        return variantId != null && variants.containsKey(variantId);
+    }
+
+    // Số lượng còn bán được của variant hot (đã trừ phần đang giữ), null nếu không phải variant hot
+    public Integer available(String variantId) {
+        HotVariant variant = variantId != null ? variants.get(variantId) : null;
+        return variant != null ? variant.counter.available() : null;
+    }
+
+    // Bật chế độ flash sale: UPDATE cờ trước để chờ các đơn đang trừ trực tiếp trên dòng này commit,
+    // sau đó đọc tồn kho mới nhất; từ lúc này decrementStock không còn trừ được variant này
+    public synchronized void enable(String variantId) {
+        if (variants.containsKey(variantId)) return;
+        Integer available = newTransaction.execute(status -> {
+            if (productVariantRepository.updateHotStock(variantId, true) == 0) {
+                throw new AppException(ErrorCode.PRODUCT_NOT_EXISTED);
+            }
+            Integer stock = productVariantRepository.findStockQuantityById(variantId);
+            long reserved = reservationRepository.sumQuantityByVariantId(variantId);
+            return (int) Math.max(0, (stock != null ? stock : 0) - reserved);
+        });
+        variants.put(variantId, new HotVariant(new StripedStockCounter(available != null ? available : 0, stripes)));
+        log.info("Flash sale enabled for variant {}: {} available", variantId, available);
+    }
+
+    // Tắt chế độ flash sale: ngừng nhận giữ hàng mới, chờ các transaction đang dở kết thúc,
+    // ghi hết phần đã bán vào DB và bỏ các phần đang giữ (checkout MoMo đó sẽ trừ trực tiếp khi thanh toán)
+    public synchronized void disable(String variantId) {
+        HotVariant variant = variants.get(variantId);
+        if (variant != null) {
+            variant.closed = true;
+            awaitInFlight(variantId, variant);
+        }
+        newTransaction.executeWithoutResult(status -> {
+            settle(reservationRepository.findByStatusAndVariantIdForUpdate(
+                    HotStockReservationStatus.COMMITTED, variantId));
+            reservationRepository.deleteHoldsByVariantId(variantId);
+            productVariantRepository.updateHotStock(variantId, false);
+        });
+        variants.remove(variantId);
+        holds.values().forEach(hold -> hold.quantities.remove(variantId));
+        holds.values().removeIf(hold -> hold.quantities.isEmpty());
+        catalogVersionTracker.bump(CatalogVersionTracker.Area.PRODUCT);
+        log.info("Flash sale disabled for variant {}", variantId);
+    }
+
+    // Checkout MoMo: giữ hàng cho các variant hot trong lúc chờ thanh toán (gọi trong transaction).
+    // Trả về variantId không đủ hàng, null nếu giữ được tất cả; khi thất bại caller phải ném exception
+    // để rollback, phần đã giữ trước đó được trả lại khi transaction kết thúc.
+    public String hold(String holdKey, Map<String, Integer> quantities) {
+        requireTransaction();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusNanos(holdTtlMs * 1_000_000);
+        Map<String, Integer> held = new TreeMap<>();
+        List<HotStockReservation> rows = new ArrayList<>();
+
+        for (Map.Entry<String, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            HotVariant variant = variants.get(entry.getKey());
+            int quantity = entry.getValue();
+            if (variant == null || quantity <= 0) continue;
+            if (!enter(variant) || !reserve(variant, quantity)) return entry.getKey();
+            held.put(entry.getKey(), quantity);
+            rows.add(HotStockReservation.builder()
+                    .variantId(entry.getKey())
+                    .holdKey(holdKey)
+                    .quantity(quantity)
+                    .status(HotStockReservationStatus.HELD)
+                    .expiresAt(expiresAt)
+                    .createdAt(now)
+                    .build());
+        }
+        if (rows.isEmpty()) return null;
+
+        reservationRepository.saveAll(rows);
+        onCompletion(status -> {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                holds.put(holdKey, new Hold(expiresAt, new ConcurrentHashMap<>(held)));
+            }
+        });
+        return null;
+    }
+
+    // Trừ hàng cho đơn vừa tạo (gọi trong transaction của đơn). orderCode có phần giữ hàng còn hạn
+    // thì dùng phần đó, còn lại trừ mới từ bộ đếm. false = không đủ hàng.
+    public boolean commit(String orderCode, String variantId, int quantity) {
+        requireTransaction();
+        HotVariant variant = variants.get(variantId);
+        if (variant == null || !enter(variant)) return false;
+
+        Hold hold = orderCode != null ? holds.get(orderCode) : null;
+        Integer held = hold != null ? hold.quantities.get(variantId) : null;
+        if (held != null && reservationRepository.commitHold(orderCode, variantId, quantity) > 0) {
+            if (quantity > held && !reserve(variant, quantity - held)) return false;
+            onCompletion(status -> {
+                if (status != TransactionSynchronization.STATUS_COMMITTED) return;
+                hold.quantities.remove(variantId);
+                if (hold.quantities.isEmpty()) holds.remove(orderCode, hold);
+                // Đơn ít hơn phần đã giữ: trả lại phần thừa
+                if (held > quantity) variant.counter.release(held - quantity);
+            });
+            return true;
+        }
+
+        // Không có phần giữ hàng (COD) hoặc đã hết hạn và bị trả lại
+        if (!reserve(variant, quantity)) return false;
+        reservationRepository.save(HotStockReservation.builder()
+                .variantId(variantId)
+                .holdKey(orderCode)
+                .quantity(quantity)
+                .status(HotStockReservationStatus.COMMITTED)
+                .createdAt(LocalDateTime.now())
+                .build());
+        return true;
+    }
+
+    // Trả lại hàng của các phần giữ đã hết hạn (khách không thanh toán)
+    @Scheduled(fixedDelayString = "${app.flash-sale.sweep-ms:5000}")
+    public void releaseExpiredHolds() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<String, Hold> entry : holds.entrySet()) {
+            String holdKey = entry.getKey();
+            Hold hold = entry.getValue();
+            if (hold.expiresAt.isAfter(now)) continue;
+            try {
+                // Dòng đã được checkout chuyển thành COMMITTED thì không xóa được -> không trả lại
+                Map<String, Integer> released = newTransaction.execute(status -> {
+                    Map<String, Integer> deleted = new HashMap<>();
+                    hold.quantities.forEach((variantId, quantity) -> {
+                        if (reservationRepository.deleteHold(holdKey, variantId) > 0) {
+                            deleted.put(variantId, quantity);
+                        }
+                    });
+                    return deleted;
+                });
+                if (released != null) {
+                    released.forEach((variantId, quantity) -> {
+                        HotVariant variant = variants.get(variantId);
+                        if (variant != null) variant.counter.release(quantity);
+                    });
+                }
+                holds.remove(holdKey, hold);
+            } catch (Exception e) {
+                log.error("Cannot release flash sale hold {}: {}", holdKey, e.getMessage(), e);
+            }
+        }
+    }
+
+    // Ghi phần đã bán vào product_variants theo lô: mỗi lô 1 transaction (trừ stock + xóa dòng đã ghi)
+    @Scheduled(fixedDelayString = "${app.flash-sale.flush-ms:1000}")
+    public void flush() {
+        try {
+            int total = 0;
+            int flushed;
+            do {
+                Integer count = newTransaction.execute(status -> settle(reservationRepository.findBatchForUpdate(
+                        HotStockReservationStatus.COMMITTED, PageRequest.of(0, flushBatchSize))));
+                flushed = count != null ? count : 0;
+                total += flushed;
+            } while (flushed == flushBatchSize);
+
+            if (total > 0) {
+                catalogVersionTracker.bump(CatalogVersionTracker.Area.PRODUCT);
+                log.debug("Flushed {} flash sale reservations", total);
+            }
+        } catch (Exception e) {
+            log.error("Cannot flush flash sale reservations: {}", e.getMessage(), e);
+        }
+    }
+
+    // Trừ tổng theo variant (thứ tự id cố định) vào stock_quantity rồi xóa đúng các dòng đó
+    private int settle(List<HotStockReservation> rows) {
+        if (rows.isEmpty()) return 0;
+        Map<String, Integer> byVariant = new TreeMap<>();
+        for (HotStockReservation row : rows) {
+            byVariant.merge(row.getVariantId(), row.getQuantity(), Integer::sum);
+        }
+        byVariant.forEach(productVariantRepository::subtractStock);
+        reservationRepository.deleteByIds(rows.stream().map(HotStockReservation::getId).toList());
+        return rows.size();
+    }
+
+    // Đăng ký 1 thao tác đang dở trên variant, kết thúc khi transaction kết thúc.
+    // Tăng inFlight trước rồi mới kiểm tra closed: disable() đóng rồi chờ inFlight về 0 nên không bỏ sót
+    private boolean enter(HotVariant variant) {
+        variant.inFlight.incrementAndGet();
+        if (variant.closed) {
+            variant.inFlight.decrementAndGet();
+            return false;
+        }
+        onCompletion(status -> variant.inFlight.decrementAndGet());
+        return true;
+    }
+
+    // Lấy hàng khỏi bộ đếm; transaction rollback thì trả lại
+    private boolean reserve(HotVariant variant, int quantity) {
+        if (!variant.counter.tryReserve(quantity)) return false;
+        onCompletion(status -> {
+            if (status != TransactionSynchronization.STATUS_COMMITTED) variant.counter.release(quantity);
+        });
+        return true;
+    }
+
+    private void awaitInFlight(String variantId, HotVariant variant) {
+        long deadline = System.currentTimeMillis() + DISABLE_WAIT_MS;
+        while (variant.inFlight.get() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                variant.closed = false;
+                throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION,
+                        "Variant " + variantId + " vẫn đang có đơn hàng xử lý, vui lòng thử lại");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                variant.closed = false;
+                throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION);
+            }
+        }
+    }
+
+    private static void onCompletion(IntConsumer action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status);
+            }
+        });
+    }
+
+    private static void requireTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Flash sale reservations must run inside a transaction");
+        }
+    }
+}
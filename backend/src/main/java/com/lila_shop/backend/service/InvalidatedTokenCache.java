@@ -0,0 +1,99 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.repository.InvalidatedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Cache trong bộ nhớ các JTI đã bị thu hồi (logout/refresh), đứng trước InvalidatedTokenRepository
+// để việc kiểm tra token trên mỗi request không cần truy vấn MySQL.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class InvalidatedTokenCache {
+    InvalidatedTokenRepository invalidatedTokenRepository;
+
+    // jti -> thời điểm (millis) có thể bỏ khỏi cache
+    Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    // false khi chưa nạp được dữ liệu từ DB -> kiểm tra trực tiếp qua repository
+    @NonFinal
+    volatile boolean loaded;
+
+    @NonFinal
+    @Value("${jwt.valid-duration}")
+    long validDuration;
+
+    @NonFinal
+    @Value("${jwt.refreshable-duration}")
+    long refreshableDuration;
+
+    // Nạp các token bị thu hồi còn trong thời gian refresh trước khi nhận request
+    @PostConstruct
+    public void loadOnStartup() {
+        reload();
+        log.info("Loaded {} revoked tokens into cache", revokedTokens.size());
+    }
+
+    // Đồng bộ lại định kỳ để nhận các token bị thu hồi từ node khác, đồng thời dọn các entry hết hạn
+    @Scheduled(
+            fixedDelayString = "${jwt.revocation-cache.sync-interval-ms:60000}",
+            initialDelayString = "${jwt.revocation-cache.sync-interval-ms:60000}")
+    public void sync() {
+        reload();
+        evictExpired();
+    }
+
+    public void revoke(String jti, Date expiryTime) {
+        if (jti == null || expiryTime == null) return;
+        revokedTokens.put(jti, expiryTime.getTime() + retentionMillis());
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null) return false;
+        if (revokedTokens.containsKey(jti)) return true;
+        return !loaded && invalidatedTokenRepository.existsById(jti);
+    }
+
+    // Mốc thời gian: các token có expiry_time trước mốc này không thể dùng lại (kể cả để refresh)
+    public Date retentionCutoff() {
+        return new Date(System.currentTimeMillis() - retentionMillis());
+    }
+
+    public int size() {
+        return revokedTokens.size();
+    }
+
+    private void reload() {
+        try {
+            invalidatedTokenRepository
+                    .findAllByExpiryTimeAfter(retentionCutoff())
+                    .forEach(token -> revoke(token.getId(), token.getExpiryTime()));
+            loaded = true;
+        } catch (Exception e) {
+            log.error("Cannot load revoked tokens: {}", e.getMessage(), e);
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(evictAt -> evictAt < now);
+    }
+
+    // expiry_time lưu exp của access token, nhưng token vẫn refresh được tới iat + refreshable-duration,
+    // nên phải giữ entry thêm khoảng (refreshable-duration - valid-duration)
+    private long retentionMillis() {
+        return Math.max(0, refreshableDuration - validDuration) * 1000L;
+    }
+}
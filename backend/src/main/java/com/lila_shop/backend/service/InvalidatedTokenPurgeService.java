@@ -0,0 +1,85 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.repository.InvalidatedTokenRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Dọn các dòng invalidated_token đã hết thời gian refresh, tránh bảng phình to vô hạn
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class InvalidatedTokenPurgeService {
+    static final String PURGE_LOCK = "lila_shop.invalidated_token_purge";
+
+    InvalidatedTokenRepository invalidatedTokenRepository;
+    InvalidatedTokenCache invalidatedTokenCache;
+    PlatformTransactionManager transactionManager;
+    MeterRegistry meterRegistry;
+
+    AtomicLong tableSize = new AtomicLong();
+
+    @NonFinal
+    @Value("${jwt.purge.batch-size:1000}")
+    int batchSize;
+
+    @NonFinal
+    @Value("${jwt.purge.max-batches:100}")
+    int maxBatches;
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("invalidated_token.rows", tableSize, AtomicLong::get)
+                .description("Số dòng trong bảng invalidated_token")
+                .register(meterRegistry);
+    }
+
+    // Transaction ngoài giữ connection chứa named lock, mỗi lô xóa commit trong transaction riêng
+    @Scheduled(cron = "${jwt.purge.cron:0 */15 * * * *}")
+    @Transactional
+    public void purgeExpiredTokens() {
+        Integer locked = invalidatedTokenRepository.tryAcquireLock(PURGE_LOCK);
+        if (locked == null || locked != 1) {
+            log.debug("Invalidated token purge is running on another node, skipping");
+            return;
+        }
+
+        try {
+            TransactionTemplate batchTransaction = new TransactionTemplate(transactionManager);
+            batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+            Date cutoff = invalidatedTokenCache.retentionCutoff();
+            int totalDeleted = 0;
+            for (int i = 0; i < maxBatches; i++) {
+                Integer deleted = batchTransaction.execute(
+                        status -> invalidatedTokenRepository.deleteExpiredBatch(cutoff, batchSize));
+                int count = deleted != null ? deleted : 0;
+                totalDeleted += count;
+                if (count < batchSize) break;
+            }
+
+            tableSize.set(invalidatedTokenRepository.count());
+            if (totalDeleted > 0) {
+                log.info("Purged {} expired invalidated tokens, {} rows remaining", totalDeleted, tableSize.get());
+            }
+        } finally {
+            invalidatedTokenRepository.releaseLock(PURGE_LOCK);
+        }
+    }
+}
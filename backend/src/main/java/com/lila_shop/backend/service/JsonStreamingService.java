@@ -0,0 +1,99 @@
+package com.lila_shop.backend.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Ghi danh sách lớn ra response dạng {"code":1000,"result":[...]} (giống ApiResponse) theo từng lô:
+// đọc entity từ Stream<T> của repository, map lô hiện tại, ghi qua JsonGenerator rồi clear persistence context.
+// Bộ nhớ chỉ giữ 1 lô, không phụ thuộc tổng số dòng.
+@Slf4j
+@Component
+public class JsonStreamingService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int chunkSize;
+
+    public JsonStreamingService(
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.streaming.chunk-size:500}") int chunkSize) {
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    // source được mở trong transaction read-only riêng vì body chạy sau khi controller đã trả về (async).
+    // chunkMapper nhận nguyên lô để có thể load dữ liệu liên quan theo lô (IN (...))
+    public <T, R> StreamingResponseBody stream(Supplier<Stream<T>> source, Function<List<T>, List<R>> chunkMapper) {
+        return outputStream -> readOnlyTransaction.executeWithoutResult(status -> {
+            int total = 0;
+            try (Stream<T> rows = source.get();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeNumberField("code", 1000);
+                generator.writeArrayFieldStart("result");
+
+                // Ghi lô ngay khi đủ chunkSize, trước khi gọi hasNext(): hasNext() của scroll đã load dòng kế tiếp
+                // vào persistence context, clear sau đó sẽ làm dòng đầu lô sau bị detached (lazy load lỗi)
+                Iterator<T> iterator = rows.iterator();
+                List<T> chunk = new ArrayList<>(chunkSize);
+                while (iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                    if (chunk.size() == chunkSize) {
+                        total += writeChunk(generator, chunk, chunkMapper);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    total += writeChunk(generator, chunk, chunkMapper);
+                }
+
+                generator.writeEndArray();
+                generator.writeEndObject();
+            } catch (IOException e) {
+                // Header đã gửi nên không thể trả lỗi JSON; client nhận response bị cắt ngang
+                log.warn("Streaming response aborted after {} rows: {}", total, e.getMessage());
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private <T, R> int writeChunk(JsonGenerator generator, List<T> chunk, Function<List<T>, List<R>> chunkMapper)
+            throws IOException {
+        for (R item : chunkMapper.apply(chunk)) {
+            generator.writeObject(item);
+        }
+        int written = chunk.size();
+        generator.flush();
+        chunk.clear();
+        // Entity của lô đã ghi xong không còn cần, tránh persistence context phình theo số dòng
+        entityManager.clear();
+        return written;
+    }
+
+    public <T, R> StreamingResponseBody streamEach(Supplier<Stream<T>> source, Function<T, R> mapper) {
+        return stream(source, chunk -> chunk.stream().map(mapper).toList());
+    }
+}
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.lila_shop.backend.dto.request.*;
 import com.lila_shop.backend.dto.response.CreateMomoResponse;
+import com.lila_shop.backend.dto.response.OrderResponse;
 import com.lila_shop.backend.dto.response.OrderStatistics;
 import com.lila_shop.backend.entity.*;
 import com.lila_shop.backend.enums.CancellationSource;
@@ -30,11 +31,13 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -52,12 +55,18 @@ public class OrderService {
     BrevoEmailService brevoEmailService;
     ProductRepository productRepository;
     ProductVariantRepository productVariantRepository;
+    InventoryRepository inventoryRepository;
     UserRepository userRepository;
     @Lazy
     ShipmentService shipmentService;
     NotificationService notificationService;
     VoucherRepository voucherRepository;
     FinancialService financialService;
+    JsonStreamingService jsonStreamingService;
+    BestSellerRanking bestSellerRanking;
+    CoPurchaseIndex coPurchaseIndex;
+    QuantitySoldWriter quantitySoldWriter;
+    FlashSaleInventory flashSaleInventory;
 
     ObjectMapper objectMapper = new ObjectMapper();
 
@@ -69,7 +78,6 @@ public class OrderService {
     @PreAuthorize("hasRole('CUSTOMER')")
     public CheckoutResult createOrderFromCurrentCart(CreateOrderRequest request) {
         Cart cart = cartService.getCart();
-        String appliedVoucherCode = cart.getAppliedVoucherCode();
         if (cart.getCartItems() == null || cart.getCartItems().isEmpty()) {
             throw new AppException(ErrorCode.CART_ITEM_NOT_EXISTED);
         }
@@ -83,6 +91,10 @@ public class OrderService {
         if (paymentMethod == PaymentMethod.MOMO) {
             // Generate order code trước để dùng cho MoMo payment
             String orderCode = generateOrderCode();
+            holdFlashSaleStock(orderCode, selectedItems.stream()
+                    .map(ci -> new StockLine(ci.getProduct(), ci.getVariant(),
+                            ci.getQuantity() != null ? ci.getQuantity() : 0))
+                    .toList());
 
             // Tạo payment link với order code
             CreateMomoResponse momoResponse = momoService.createMomoPayment(
@@ -150,7 +162,7 @@ public class OrderService {
                 persistOrderItems(savedOrder, selectedItems);
                 orderRepository.flush();
 
-                registerVoucherUsage(cart.getUser(), appliedVoucherCode);
+                registerVoucherUsage(cart.getUser(), pricing.appliedVoucherCode);
                 cartService.clearVoucherForUser(cart.getUser());
 
                 // Xóa cart items sau khi tạo đơn hàng
@@ -227,14 +239,14 @@ public class OrderService {
             int quantity = request.getQuantity() != null && request.getQuantity() > 0
                     ? request.getQuantity()
                     : 1;
-            double unitPrice = (variant != null && variant.getPrice() != null) ? variant.getPrice()
-                    : (product.getPrice() != null ? product.getPrice() : 0.0);
+            double unitPrice = EffectivePriceStore.unitPrice(product, variant);
             double finalPrice = Math.round(unitPrice * quantity);
             double shippingFee = request.getShippingFee() != null ? Math.round(request.getShippingFee()) : 0.0;
             double orderTotal = Math.round(finalPrice + shippingFee);
 
             // Generate order code trước để dùng cho MoMo payment
             String orderCode = generateOrderCode();
+            holdFlashSaleStock(orderCode, List.of(new StockLine(product, variant, quantity)));
 
             // Tạo payment link với order code
             CreateMomoResponse momoResponse = momoService.createMomoPayment(
@@ -282,8 +294,7 @@ public class OrderService {
                     .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_EXISTED));
         }
 
-        double unitPrice = (variant != null && variant.getPrice() != null) ? variant.getPrice()
-                : (product.getPrice() != null ? product.getPrice() : 0.0);
+        double unitPrice = EffectivePriceStore.unitPrice(product, variant);
         double finalPrice = Math.round(unitPrice * quantity);
         double shippingFee = request.getShippingFee() != null ? Math.round(request.getShippingFee()) : 0.0;
         double orderTotal = Math.round(finalPrice + shippingFee);
@@ -321,6 +332,9 @@ public class OrderService {
 
                 Order savedOrder = orderRepository.save(order);
 
+                // Giữ hàng trước khi insert order_item (xem persistOrderItems)
+                updateInventoryAndSales(savedOrder.getCode(), product, variant, quantity);
+
                 // Tạo OrderItem trực tiếp từ product
                 OrderItem orderItem = OrderItem.builder()
                         .order(savedOrder)
@@ -335,7 +349,6 @@ public class OrderService {
                 // Sử dụng ArrayList thay vì List.of() để tránh UnsupportedOperationException
                 savedOrder.setItems(new ArrayList<>(List.of(orderItem)));
 
-                updateInventoryAndSales(product, variant, quantity);
                 finalizeVoucherUsageForUser(user);
 
                 // Ghi nhận doanh thu: COD chỉ ghi nhận khi DELIVERED
@@ -383,7 +396,6 @@ public class OrderService {
     @PreAuthorize("hasRole('CUSTOMER')")
     public Order createOrderFromCurrentCartAfterPayment(CreateOrderRequest request) {
         Cart cart = cartService.getCart();
-        String appliedVoucherCode = cart.getAppliedVoucherCode();
         if (cart.getCartItems() == null || cart.getCartItems().isEmpty()) {
             throw new AppException(ErrorCode.CART_ITEM_NOT_EXISTED);
         }
@@ -437,7 +449,7 @@ public class OrderService {
                 Order savedOrder = orderRepository.save(order);
                 persistOrderItems(savedOrder, selectedItems);
                 orderRepository.flush();
-                registerVoucherUsage(cart.getUser(), appliedVoucherCode);
+                registerVoucherUsage(cart.getUser(), pricing.appliedVoucherCode);
                 cartService.clearVoucherForUser(cart.getUser());
 
                 // Xóa cart items sau khi tạo đơn hàng
@@ -508,8 +520,7 @@ public class OrderService {
                 ? request.getQuantity()
                 : 1;
 
-        double unitPrice = (variant != null && variant.getPrice() != null) ? variant.getPrice()
-                : (product.getPrice() != null ? product.getPrice() : 0.0);
+        double unitPrice = EffectivePriceStore.unitPrice(product, variant);
         double finalPrice = Math.round(unitPrice * quantity);
         double shippingFee = request.getShippingFee() != null ? Math.round(request.getShippingFee()) : 0.0;
         double orderTotal = Math.round(finalPrice + shippingFee);
@@ -559,6 +570,9 @@ public class OrderService {
 
                 Order savedOrder = orderRepository.save(order);
 
+                // Giữ hàng trước khi insert order_item (xem persistOrderItems)
+                updateInventoryAndSales(savedOrder.getCode(), product, variant, quantity);
+
                 OrderItem orderItem = OrderItem.builder()
                         .order(savedOrder)
                         .product(product)
@@ -571,7 +585,6 @@ public class OrderService {
                 orderItemRepository.flush();
                 savedOrder.setItems(new ArrayList<>(List.of(orderItem)));
 
-                updateInventoryAndSales(product, variant, quantity);
                 finalizeVoucherUsageForUser(user);
 
                 // Ghi nhận doanh thu: COD chỉ ghi nhận khi DELIVERED
@@ -649,23 +662,14 @@ public class OrderService {
     private PricingSummary calculatePricing(Cart cart, List<CartItem> selectedItems, Double rawShippingFee) {
         PricingSummary summary = new PricingSummary();
 
-        double shippingFee = rawShippingFee != null ? rawShippingFee : 0.0;
-        double selectedSubtotal = selectedItems.stream()
-                .mapToDouble(ci -> ci.getFinalPrice() != null ? ci.getFinalPrice() : 0.0)
-                .sum();
-        Double rawVoucherDiscount = cart.getVoucherDiscount();
-        double voucherDiscount = rawVoucherDiscount == null ? 0.0 : rawVoucherDiscount;
-
-        selectedSubtotal = Math.round(selectedSubtotal);
-        shippingFee = Math.round(shippingFee);
-        voucherDiscount = Math.round(voucherDiscount);
-
-        double rawOrderTotal = selectedSubtotal + shippingFee - voucherDiscount;
-        double orderTotal = Math.round(Math.max(0.0, rawOrderTotal));
+        double shippingFee = Math.round(rawShippingFee != null ? rawShippingFee : 0.0);
+        // Cùng cách tính với POST /cart/quote: voucher xét trên các dòng được chọn
+        CartPricingEngine.Result result = cartService.priceSelection(cart, selectedItems);
 
         summary.shippingFee = shippingFee;
-        summary.orderTotal = orderTotal;
-        summary.voucherDiscount = voucherDiscount;
+        summary.orderTotal = result.totalWithShipping(shippingFee);
+        summary.voucherDiscount = result.getVoucherDiscount();
+        summary.appliedVoucherCode = result.getAppliedVoucherCode();
         summary.selectedCartItemIds = selectedItems.stream()
                 .map(CartItem::getId)
                 .filter(Objects::nonNull)
@@ -730,6 +734,13 @@ public class OrderService {
         if (selectedItems == null || selectedItems.isEmpty()) {
             return;
         }
+        // Giữ hàng trước khi insert order_items: FK variant_id của dòng con lấy shared lock trên variant,
+        // nếu insert trước thì 2 đơn cùng variant đều giữ shared lock rồi chờ nhau nâng lên exclusive
+        updateInventoryAndSales(order.getCode(), selectedItems.stream()
+                .map(ci -> new StockLine(ci.getProduct(), ci.getVariant(),
+                        ci.getQuantity() != null ? ci.getQuantity() : 0))
+                .toList());
+
         List<OrderItem> orderItems = selectedItems.stream()
                 .map(ci -> OrderItem.builder()
                         .order(order)
@@ -743,8 +754,7 @@ public class OrderService {
         orderItemRepository.saveAll(orderItems);
         orderItemRepository.flush(); // Ensure items are persisted immediately
         order.setItems(orderItems);
-
-        selectedItems.forEach(ci -> updateInventoryAndSales(ci.getProduct(), ci.getVariant(), ci.getQuantity()));
+        coPurchaseIndex.recordOrder(productIdsOf(orderItems), 1);
     }
 
     private void finalizePaidOrder(Order order, List<String> cartItemIds) {
@@ -790,59 +800,112 @@ public class OrderService {
         finalizePaidOrder(order, parseCartItemIds(order.getCartItemIdsSnapshot()));
     }
 
-    private void updateInventoryAndSales(Product product, ProductVariant variant, int quantity) {
-        if (product == null || quantity <= 0) {
+    private void updateInventoryAndSales(String orderCode, Product product, ProductVariant variant, int quantity) {
+        updateInventoryAndSales(orderCode, List.of(new StockLine(product, variant, quantity)));
+    }
+
+    // Giữ hàng cho đơn: mỗi dòng là 1 câu UPDATE có điều kiện (tồn >= số lượng), không SELECT ... FOR UPDATE;
+    // 0 dòng bị ảnh hưởng = hết hàng, exception làm rollback các dòng đã trừ trước đó.
+    // Xử lý theo thứ tự id cố định (variant, rồi inventory theo productId) để các đơn có sản phẩm chung
+    // luôn khóa dòng theo cùng thứ tự; phải gọi trước khi insert order_items (FK lấy shared lock trên variant).
+    // Lượt bán ghi sau commit (QuantitySoldWriter).
+    private void updateInventoryAndSales(String orderCode, List<StockLine> lines) {
+        List<StockLine> ordered = lines.stream()
+                .filter(line -> line.product() != null && line.quantity() > 0)
+                .sorted(Comparator.comparing(StockLine::lockKey))
+                .toList();
+        if (ordered.isEmpty()) {
             return;
         }
 
-        // Lock product & variant để tránh xung đột (Pessimistic Lock)
-        // Re-fetch entity với lock để đảm bảo chúng ta có dữ liệu mới nhất
-        Product lockedProduct = productRepository.findByIdWithLock(product.getId())
-                .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_EXISTED));
-
-        int sold = lockedProduct.getQuantitySold() != null ? lockedProduct.getQuantitySold() : 0;
-        lockedProduct.setQuantitySold(sold + quantity);
+        Map<String, Integer> soldByProduct = new TreeMap<>();
+        for (StockLine line : ordered) {
+            reserveStock(orderCode, line);
+            soldByProduct.merge(line.product().getId(), line.quantity(), Integer::sum);
+        }
 
-        if (variant != null) {
-            ProductVariant lockedVariant = productVariantRepository.findByIdWithLock(variant.getId())
-                    .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_EXISTED));
+        quantitySoldWriter.increment(soldByProduct);
+        soldByProduct.forEach((productId, quantity) -> bestSellerRanking.recordSale(productId, quantity));
+        // Không tăng version catalog: tồn kho/lượt bán trên danh sách được phép trễ tới max-stale-ms
+        // (mỗi đơn hàng đều bump thì ETag danh sách sản phẩm gần như không bao giờ trả 304)
+    }
 
-            Integer stock = lockedVariant.getStockQuantity();
-            if (stock == null)
-                stock = 0;
+    private void reserveStock(String orderCode, StockLine line) {
+        Product product = line.product();
+        ProductVariant variant = line.variant();
+        int quantity = line.quantity();
 
-            if (stock < quantity) {
-                throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION,
-                        "Sản phẩm '" + lockedVariant.getName() + "' vừa hết hàng (Tồn: " + stock + ", Yêu cầu: "
-                                + quantity + ")");
+        if (variant != null && flashSaleInventory.isHot(variant.getId())) {
+            // Variant flash sale: trừ trong bộ nhớ (dùng phần đã giữ lúc tạo link MoMo nếu có)
+            if (!flashSaleInventory.commit(orderCode, variant.getId(), quantity)) {
+                throw outOfStock(variant.getName(), flashSaleInventory.available(variant.getId()), quantity);
             }
-
-            int updatedStock = stock - quantity;
-            lockedVariant.setStockQuantity(updatedStock);
-            // Save locked variant được xử lý bởi commit giao dịch
-            productVariantRepository.save(lockedVariant);
-        } else if (lockedProduct.getInventory() != null) {
-            Integer stock = lockedProduct.getInventory().getStockQuantity();
-            if (stock == null)
-                stock = 0;
-
-            if (stock < quantity) {
-                throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION,
-                        "Sản phẩm '" + lockedProduct.getName() + "' vừa hết hàng (Tồn: " + stock + ", Yêu cầu: "
-                                + quantity + ")");
+        } else if (variant != null) {
+            if (productVariantRepository.decrementStock(variant.getId(), quantity) == 0) {
+                Integer stock = productVariantRepository.findStockQuantityById(variant.getId());
+                throw outOfStock(variant.getName(), stock, quantity);
+            }
+        } else if (product.getInventory() != null) {
+            int updated = inventoryRepository.decrementStock(product.getId(), quantity, LocalDate.now());
+            // Dòng inventory đang bị khóa bởi UPDATE ở trên nên đọc lại được đúng tồn kho sau khi trừ
+            Integer stock = inventoryRepository.findStockQuantityByProductId(product.getId());
+            if (updated == 0) {
+                throw outOfStock(product.getName(), stock, quantity);
             }
+            if (stock != null && stock + quantity > 40 && stock <= 40) {
+                notifyStaffLowStock(product, stock);
+            }
+        }
+    }
 
-            int updatedStock = stock - quantity;
-            int normalizedStock = Math.max(0, updatedStock);
-            lockedProduct.getInventory().setStockQuantity(normalizedStock);
-            lockedProduct.getInventory().setLastUpdated(LocalDate.now());
+    // Checkout MoMo: giữ hàng các variant flash sale trong lúc khách thanh toán (holdKey = mã đơn),
+    // để khách đã được chuyển sang MoMo không bị hết hàng khi quay lại tạo đơn
+    private void holdFlashSaleStock(String orderCode, List<StockLine> lines) {
+        Map<String, Integer> quantities = new TreeMap<>();
+        Map<String, String> names = new HashMap<>();
+        for (StockLine line : lines) {
+            ProductVariant variant = line.variant();
+            if (variant == null || line.quantity() <= 0 || !flashSaleInventory.isHot(variant.getId())) continue;
+            quantities.merge(variant.getId(), line.quantity(), Integer::sum);
+            names.put(variant.getId(), variant.getName());
+        }
+        if (quantities.isEmpty()) {
+            return;
+        }
+        String failedVariantId = flashSaleInventory.hold(orderCode, quantities);
+        if (failedVariantId != null) {
+            throw outOfStock(names.get(failedVariantId), flashSaleInventory.available(failedVariantId),
+                    quantities.get(failedVariantId));
+        }
+    }
+
+    private AppException outOfStock(String name, Integer stock, int quantity) {
+        return new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION,
+                "Sản phẩm '" + name + "' vừa hết hàng (Tồn: " + (stock != null ? stock : 0) + ", Yêu cầu: "
+                        + quantity + ")");
+    }
 
-            if (stock > 40 && normalizedStock <= 40) {
-                notifyStaffLowStock(lockedProduct, normalizedStock);
+    // Hủy đơn / hoàn tiền: trừ lại lượt bán đã cộng khi tạo đơn.
+    // Tồn kho không tự cộng lại, nhân viên kiểm tra hàng thực tế (xem thông báo hủy/trả hàng)
+    private void reverseSales(Order order) {
+        if (order.getItems() == null || order.getItems().isEmpty()) {
+            return;
+        }
+        for (OrderItem item : order.getItems()) {
+            if (item.getProduct() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                continue;
             }
+            productRepository.adjustQuantitySold(item.getProduct().getId(), -item.getQuantity());
+            bestSellerRanking.recordSale(item.getProduct().getId(), -item.getQuantity());
         }
+        coPurchaseIndex.recordOrder(productIdsOf(order.getItems()), -1);
+    }
 
-        productRepository.save(lockedProduct);
+    private static List<String> productIdsOf(List<OrderItem> items) {
+        return items.stream()
+                .filter(item -> item.getProduct() != null)
+                .map(item -> item.getProduct().getId())
+                .toList();
     }
 
     private PaymentMethod resolvePaymentMethod(String value) {
@@ -1101,10 +1164,19 @@ public class OrderService {
         }
     }
 
+    // 1 dòng cần trừ tồn kho; lockKey quyết định thứ tự khóa dòng khi giữ hàng
+    private record StockLine(Product product, ProductVariant variant, int quantity) {
+        String lockKey() {
+            return variant != null ? "0:" + variant.getId() : "1:" + product.getId();
+        }
+    }
+
     static class PricingSummary {
         double shippingFee;
         double orderTotal;
         double voucherDiscount;
+        // Voucher thực sự được trừ trên các dòng được chọn (null nếu không đủ điều kiện)
+        String appliedVoucherCode;
         List<String> selectedCartItemIds;
         String cartItemIdsSnapshot;
     }
@@ -1187,6 +1259,7 @@ public class OrderService {
         order.setCancellationReason(resolvedReason);
         order.setCancellationSource(source);
         order.setNote(buildCancellationNote(resolvedReason));
+        reverseSales(order);
 
         Order savedOrder = orderRepository.save(order);
         if (source == CancellationSource.CUSTOMER) {
@@ -1216,10 +1289,10 @@ public class OrderService {
         return null;
     }
 
-    @Transactional(readOnly = true)
+    // Toàn bộ đơn hàng ghi thẳng ra response theo lô, không dựng List trong bộ nhớ
     @PreAuthorize("hasAnyRole('STAFF','ADMIN')")
-    public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+    public StreamingResponseBody streamAllOrders(Function<Order, OrderResponse> toResponse) {
+        return jsonStreamingService.streamEach(orderRepository::streamAllWithRelations, toResponse);
     }
 
     // Danh sách đơn hàng của chính khách hàng hiện đang đăng nhập.
@@ -1729,6 +1802,7 @@ public class OrderService {
             order.setRefundAmount(request.getRefundAmount());
         }
         order.setStatus(OrderStatus.REFUNDED);
+        reverseSales(order);
 
         Order savedOrder = orderRepository.save(order);
         notifyStaffOrderReturned(savedOrder);
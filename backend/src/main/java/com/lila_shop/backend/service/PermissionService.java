@@ -20,10 +20,12 @@ import java.util.List;
 public class PermissionService {
     PermissionRepository permissionRepository;
     PermissionMapper permissionMapper;
+    RoleScopeCache roleScopeCache;
 
     public PermissionResponse create(PermissionRequest request) {
         Permission permission = permissionMapper.toPermission(request);
         permission = permissionRepository.save(permission);
+        roleScopeCache.invalidateAll();
         return permissionMapper.toPermissionResponse(permission);
     }
 
@@ -34,5 +36,6 @@ public class PermissionService {
 
     public void delete(String permission) {
         permissionRepository.deleteById(permission);
+        roleScopeCache.invalidateAll();
     }
 }
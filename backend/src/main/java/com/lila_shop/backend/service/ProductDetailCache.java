@@ -0,0 +1,155 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.dto.response.ProductResponse;
+import com.lila_shop.backend.event.ProductChangedEvent;
+import com.lila_shop.backend.event.PromotionChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Cache ProductResponse của trang chi tiết sản phẩm theo productId, có TTL và giới hạn số entry.
+// Nhiều request cùng miss 1 id chỉ chạy 1 lần load (single-flight), các request còn lại chờ kết quả đó.
+// Bị xóa khi product/variant/media/promotion thay đổi; TTL giới hạn độ trễ với thay đổi từ node khác
+// và với tồn kho/lượt bán (không invalidate theo từng đơn hàng).
+@Slf4j
+@Component
+public class ProductDetailCache {
+
+    @AllArgsConstructor
+    private static class Entry {
+        ProductResponse value;
+        long expiresAt;
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<ProductResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final long ttlMs;
+    private final int maxSize;
+
+    public ProductDetailCache(
+            @Value("${app.product-detail-cache.ttl-ms:30000}") long ttlMs,
+            @Value("${app.product-detail-cache.max-size:5000}") int maxSize) {
+        this.ttlMs = ttlMs;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    public ProductResponse get(String productId, Supplier<ProductResponse> loader) {
+        Entry entry = entries.get(productId);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            return entry.value;
+        }
+
+        CompletableFuture<ProductResponse> mine = new CompletableFuture<>();
+        CompletableFuture<ProductResponse> running = inFlight.putIfAbsent(productId, mine);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            ProductResponse value = loader.get();
+            // invalidate() trong lúc đang load đã gỡ future này -> kết quả có thể cũ, chỉ trả cho người đang chờ
+            if (inFlight.remove(productId, mine)) {
+                put(productId, value);
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            inFlight.remove(productId, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public void invalidate(String productId) {
+        evict(productId);
+        afterCommit(() -> evict(productId));
+    }
+
+    public void invalidateAll() {
+        evictAll();
+        afterCommit(this::evictAll);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        evict(event.getProductId());
+    }
+
+    // Tên/thời gian promotion hiển thị trên nhiều sản phẩm, promotion thay đổi ít nên xóa toàn bộ
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPromotionChanged(PromotionChangedEvent event) {
+        evictAll();
+    }
+
+    @Scheduled(fixedDelayString = "${app.product-detail-cache.ttl-ms:30000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+    }
+
+    private void evict(String productId) {
+        entries.remove(productId);
+        inFlight.remove(productId);
+    }
+
+    private void evictAll() {
+        entries.clear();
+        inFlight.clear();
+    }
+
+    // Xóa lại sau commit: request đọc trong lúc transaction chưa commit có thể đã cache dữ liệu cũ
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private void put(String productId, ProductResponse value) {
+        if (entries.size() >= maxSize && !entries.containsKey(productId)) {
+            makeRoom();
+        }
+        entries.put(productId, new Entry(value, System.currentTimeMillis() + ttlMs));
+    }
+
+    // Đầy: bỏ entry hết hạn, nếu vẫn đầy thì bỏ 10% entry sắp hết hạn nhất (nạp sớm nhất)
+    private synchronized void makeRoom() {
+        if (entries.size() < maxSize) return;
+        evictExpired();
+        int excess = entries.size() - maxSize + Math.max(1, maxSize / 10);
+        if (excess <= 0) return;
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt))
+                .limit(excess)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(entries::remove);
+    }
+
+    private static ProductResponse await(CompletableFuture<ProductResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Trả lại đúng exception của lần load (vd: AppException PRODUCT_NOT_EXISTED)
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.dto.request.ProductFacetFilterRequest;
+import com.lila_shop.backend.dto.response.FacetCountResponse;
+import com.lila_shop.backend.entity.Product;
+import com.lila_shop.backend.enums.ProductStatus;
+import com.lila_shop.backend.event.ProductChangedEvent;
+import com.lila_shop.backend.repository.ProductRepository;
+import com.lila_shop.backend.util.TextNormalizer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// Bitmap theo từng giá trị thuộc tính (brand, skinType, skinConcern, origin, category) của sản phẩm đã duyệt.
+// Lọc kết hợp = AND/OR các bitmap, đồng thời trả về số lượng theo từng giá trị (facet count).
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductFacetIndex {
+    // skinType/skinConcern có thể chứa nhiều giá trị: "Da dầu, Da hỗn hợp"
+    private static final Pattern MULTI_VALUE_SEPARATOR = Pattern.compile("[,;/]");
+    private static final int MAX_FACET_VALUES = 50;
+
+    public enum Facet {
+        BRAND("brand"),
+        SKIN_TYPE("skinType"),
+        SKIN_CONCERN("skinConcern"),
+        ORIGIN("origin"),
+        CATEGORY("categoryId");
+
+        private final String key;
+
+        Facet(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class FacetResult {
+        List<String> productIds;
+        int totalElements;
+        Map<String, List<FacetCountResponse>> facets;
+    }
+
+    @AllArgsConstructor
+    private static class FacetDocument {
+        String productId;
+        double price;
+        int quantitySold;
+        Map<Facet, List<String>> valueKeys;
+    }
+
+    private final ProductRepository productRepository;
+    private final CategoryTreeCache categoryTreeCache;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    // facet -> (giá trị đã chuẩn hóa -> bitmap theo ordinal)
+    private final Map<Facet, Map<String, BitSet>> bitmaps = new EnumMap<>(Facet.class);
+    // facet -> (giá trị đã chuẩn hóa -> giá trị hiển thị)
+    private final Map<Facet, Map<String, String>> labels = new EnumMap<>(Facet.class);
+
+    // productId <-> ordinal (vị trí bit)
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<FacetDocument> documents = new ArrayList<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+
+    // Thay đổi 1 sản phẩm; product = null là gỡ khỏi index
+    private record PendingChange(String productId, Product product) {}
+
+    // Thay đổi phát sinh trong lúc rebuild đọc DB: áp dụng lại sau khi nạp dữ liệu mới
+    private List<PendingChange> pending;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    // Rebuild định kỳ để cập nhật quantitySold và thay đổi không đi qua ProductService
+    @Scheduled(cron = "${app.facet.rebuild-cron:0 5 * * * *}")
+    public void rebuild() {
+        // Rebuild lúc khởi động và theo cron có thể chạy chồng nhau: chạy lần lượt để không mất pending
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            try {
+                List<Product> products = productRepository.findByStatus(ProductStatus.APPROVED);
+
+                lock.writeLock().lock();
+                try {
+                    bitmaps.clear();
+                    labels.clear();
+                    ordinals.clear();
+                    documents.clear();
+                    freeOrdinals.clear();
+                    live.clear();
+                    products.forEach(this::addInternal);
+                    for (PendingChange change : pending) {
+                        apply(change.productId(), change.product());
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                log.info("Product facet index built: {} products", products.size());
+            } catch (Exception e) {
+                log.error("Cannot build product facet index: {}", e.getMessage(), e);
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        productRepository
+                .findById(event.getProductId())
+                .ifPresentOrElse(this::index, () -> remove(event.getProductId()));
+    }
+
+    public void index(Product product) {
+        change(product.getId(), product);
+    }
+
+    public void remove(String productId) {
+        change(productId, null);
+    }
+
+    private void change(String productId, Product product) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) pending.add(new PendingChange(productId, product));
+            apply(productId, product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(String productId, Product product) {
+        removeInternal(productId);
+        if (product != null && product.getStatus() == ProductStatus.APPROVED) {
+            addInternal(product);
+        }
+    }
+
+    public FacetResult filter(ProductFacetFilterRequest request, int page, int size) {
+        Map<Facet, List<String>> selected = new EnumMap<>(Facet.class);
+        putSelected(selected, Facet.BRAND, request.getBrand());
+        putSelected(selected, Facet.SKIN_TYPE, request.getSkinType());
+        putSelected(selected, Facet.SKIN_CONCERN, request.getSkinConcern());
+        putSelected(selected, Facet.ORIGIN, request.getOrigin());
+        putSelected(selected, Facet.CATEGORY, withDescendants(request.getCategoryId()));
+
+        lock.readLock().lock();
+        try {
+            BitSet base = priceMatches(request.getMinPrice(), request.getMaxPrice());
+
+            // OR trong cùng thuộc tính
+            Map<Facet, BitSet> facetMatches = new EnumMap<>(Facet.class);
+            selected.forEach((facet, keys) -> facetMatches.put(facet, union(facet, keys)));
+
+            // AND giữa các thuộc tính
+            BitSet result = (BitSet) base.clone();
+            facetMatches.values().forEach(result::and);
+
+            // Facet count: áp dụng bộ lọc của các thuộc tính khác (trừ chính nó)
+            Map<String, List<FacetCountResponse>> facets = new LinkedHashMap<>();
+            for (Facet facet : Facet.values()) {
+                BitSet others = (BitSet) base.clone();
+                facetMatches.forEach((other, bits) -> {
+                    if (other != facet) others.and(bits);
+                });
+                facets.put(facet.getKey(), countValues(facet, others));
+            }
+
+            List<FacetDocument> matched = new ArrayList<>(result.cardinality());
+            for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+                matched.add(documents.get(i));
+            }
+            // Sắp xếp theo bán chạy, cùng số lượng thì theo id để ổn định giữa các trang
+            matched.sort(Comparator.<FacetDocument>comparingInt(d -> d.quantitySold)
+                    .reversed()
+                    .thenComparing(d -> d.productId));
+
+            List<String> pageIds = matched.stream()
+                    .skip((long) page * size)
+                    .limit(size)
+                    .map(d -> d.productId)
+                    .toList();
+
+            return new FacetResult(pageIds, matched.size(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet priceMatches(Double minPrice, Double maxPrice) {
+        if (minPrice == null && maxPrice == null) return (BitSet) live.clone();
+
+        double min = minPrice != null ? minPrice : Double.NEGATIVE_INFINITY;
+        double max = maxPrice != null ? maxPrice : Double.POSITIVE_INFINITY;
+        BitSet matches = new BitSet(documents.size());
+        for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+            double price = documents.get(i).price;
+            if (price >= min && price <= max) matches.set(i);
+        }
+        return matches;
+    }
+
+    private BitSet union(Facet facet, List<String> keys) {
+        BitSet bits = new BitSet();
+        Map<String, BitSet> values = bitmaps.getOrDefault(facet, Map.of());
+        for (String key : keys) {
+            BitSet valueBits = values.get(key);
+            if (valueBits != null) bits.or(valueBits);
+        }
+        return bits;
+    }
+
+    private List<FacetCountResponse> countValues(Facet facet, BitSet filter) {
+        List<FacetCountResponse> counts = new ArrayList<>();
+        Map<String, String> facetLabels = labels.getOrDefault(facet, Map.of());
+        bitmaps.getOrDefault(facet, Map.of()).forEach((key, bits) -> {
+            BitSet intersection = (BitSet) bits.clone();
+            intersection.and(filter);
+            int count = intersection.cardinality();
+            if (count > 0) {
+                counts.add(FacetCountResponse.builder()
+                        .value(facetLabels.getOrDefault(key, key))
+                        .count(count)
+                        .build());
+            }
+        });
+        counts.sort(Comparator.comparing(FacetCountResponse::getCount)
+                .reversed()
+                .thenComparing(FacetCountResponse::getValue));
+        return counts.size() > MAX_FACET_VALUES ? counts.subList(0, MAX_FACET_VALUES) : counts;
+    }
+
+    private void addInternal(Product product) {
+        Map<Facet, List<String>> valueKeys = new EnumMap<>(Facet.class);
+        addValues(valueKeys, Facet.BRAND, List.of(nullToEmpty(product.getBrand())));
+        addValues(valueKeys, Facet.SKIN_TYPE, splitValues(product.getSkinType()));
+        addValues(valueKeys, Facet.SKIN_CONCERN, splitValues(product.getSkinConcern()));
+        addValues(valueKeys, Facet.ORIGIN, List.of(nullToEmpty(product.getOrigin())));
+        // category là proxy LAZY, getId() không cần load category
+        if (product.getCategory() != null) {
+            addValues(valueKeys, Facet.CATEGORY, List.of(nullToEmpty(product.getCategory().getId())));
+        }
+
+        int ordinal = freeOrdinals.isEmpty() ? documents.size() : freeOrdinals.pop();
+        FacetDocument document = new FacetDocument(
+                product.getId(),
+                product.getPrice() != null ? product.getPrice() : 0,
+                product.getQuantitySold() != null ? product.getQuantitySold() : 0,
+                valueKeys);
+        if (ordinal == documents.size()) {
+            documents.add(document);
+        } else {
+            documents.set(ordinal, document);
+        }
+        ordinals.put(product.getId(), ordinal);
+        live.set(ordinal);
+
+        valueKeys.forEach((facet, keys) -> keys.forEach(key -> bitmaps
+                .computeIfAbsent(facet, f -> new HashMap<>())
+                .computeIfAbsent(key, k -> new BitSet())
+                .set(ordinal)));
+    }
+
+    private void removeInternal(String productId) {
+        Integer ordinal = ordinals.remove(productId);
+        if (ordinal == null) return;
+
+        FacetDocument document = documents.get(ordinal);
+        document.valueKeys.forEach((facet, keys) -> {
+            Map<String, BitSet> values = bitmaps.get(facet);
+            if (values == null) return;
+            for (String key : keys) {
+                BitSet bits = values.get(key);
+                if (bits == null) continue;
+                bits.clear(ordinal);
+                if (bits.isEmpty()) {
+                    values.remove(key);
+                    labels.getOrDefault(facet, new HashMap<>()).remove(key);
+                }
+            }
+        });
+
+        documents.set(ordinal, null);
+        live.clear(ordinal);
+        freeOrdinals.push(ordinal);
+    }
+
+    private void addValues(Map<Facet, List<String>> valueKeys, Facet facet, List<String> values) {
+        List<String> keys = new ArrayList<>();
+        for (String value : values) {
+            String label = value.trim();
+            if (label.isEmpty()) continue;
+            String key = TextNormalizer.fold(label);
+            keys.add(key);
+            labels.computeIfAbsent(facet, f -> new HashMap<>()).putIfAbsent(key, label);
+        }
+        if (!keys.isEmpty()) valueKeys.put(facet, keys);
+    }
+
+    private static List<String> splitValues(String value) {
+        if (value == null) return List.of();
+        return List.of(MULTI_VALUE_SEPARATOR.split(value));
+    }
+
+    // Lọc theo danh mục gồm cả danh mục con cháu, giống danh sách theo danh mục và bán chạy
+    private List<String> withDescendants(List<String> categoryIds) {
+        if (categoryIds == null || categoryIds.isEmpty()) return categoryIds;
+        Set<String> expanded = new LinkedHashSet<>();
+        for (String categoryId : categoryIds) {
+            if (categoryId == null || categoryId.isBlank()) continue;
+            expanded.addAll(categoryTreeCache.getDescendantIds(categoryId.trim()));
+        }
+        return new ArrayList<>(expanded);
+    }
+
+    private static void putSelected(Map<Facet, List<String>> selected, Facet facet, List<String> values) {
+        if (values == null || values.isEmpty()) return;
+        List<String> keys = values.stream()
+                .filter(v -> v != null && !v.isBlank())
+                .map(v -> TextNormalizer.fold(v.trim()))
+                .toList();
+        if (!keys.isEmpty()) selected.put(facet, keys);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
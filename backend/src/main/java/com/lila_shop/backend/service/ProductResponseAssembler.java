@@ -0,0 +1,105 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.dto.response.ProductResponse;
+import com.lila_shop.backend.entity.Product;
+import com.lila_shop.backend.entity.ProductMedia;
+import com.lila_shop.backend.entity.ProductVariant;
+import com.lila_shop.backend.entity.User;
+import com.lila_shop.backend.mapper.ProductMapper;
+import com.lila_shop.backend.repository.ProductMediaRepository;
+import com.lila_shop.backend.repository.ProductVariantRepository;
+import com.lila_shop.backend.repository.UserRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Map danh sách Product -> ProductResponse với số query cố định, không phụ thuộc số dòng:
+// products đã được load kèm category/promotion/inventory/defaultMedia (@EntityGraph),
+// media, variants và tên người tạo/duyệt được load theo lô bằng IN (...).
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ProductResponseAssembler {
+
+    ProductMapper productMapper;
+    ProductMediaRepository productMediaRepository;
+    ProductVariantRepository productVariantRepository;
+    UserRepository userRepository;
+    EffectivePriceStore effectivePriceStore;
+
+    public List<ProductResponse> toResponses(List<Product> products) {
+        if (products.isEmpty()) return List.of();
+
+        List<String> productIds = products.stream().map(Product::getId).toList();
+
+        // getProduct().getId() / getSubmittedBy().getId() đọc id từ proxy, không khởi tạo entity
+        Map<String, List<ProductMedia>> mediaByProduct = productMediaRepository
+                .findByProductIdInOrderByDisplayOrderAsc(productIds).stream()
+                .collect(Collectors.groupingBy(m -> m.getProduct().getId()));
+        Map<String, List<ProductVariant>> variantsByProduct = productVariantRepository
+                .findByProductIdIn(productIds).stream()
+                .collect(Collectors.groupingBy(v -> v.getProduct().getId()));
+        Map<String, String> userNames = loadUserNames(products);
+
+        return products.stream()
+                .map(product -> {
+                    ProductResponse response = productMapper.toListResponse(product);
+                    List<ProductVariant> variants = variantsByProduct.getOrDefault(product.getId(), List.of());
+                    response.setMediaUrls(productMapper.mapMediaUrls(
+                            mediaByProduct.getOrDefault(product.getId(), List.of())));
+                    response.setVariants(productMapper.mapVariants(variants));
+                    response.setDefaultVariantId(productMapper.mapDefaultVariantId(variants));
+                    if (response.getSubmittedBy() != null) {
+                        response.setSubmittedByName(userNames.get(response.getSubmittedBy()));
+                    }
+                    if (response.getApprovedBy() != null) {
+                        response.setApprovedByName(userNames.get(response.getApprovedBy()));
+                    }
+                    applyEffectivePrice(response);
+                    return response;
+                })
+                .toList();
+    }
+
+    // Giá lấy từ EffectivePriceStore; promotion đã hết hiệu lực (job hết hạn chưa chạy) thì không hiển thị
+    private void applyEffectivePrice(ProductResponse response) {
+        EffectivePriceStore.EffectivePrice price = effectivePriceStore.getProductPrice(response.getId());
+        if (price == null) return;
+
+        response.setPrice(price.getPrice());
+        response.setDiscountValue(price.getDiscountValue());
+        if (price.getPromotionId() == null && response.getPromotionId() != null) {
+            response.setPromotionId(null);
+            response.setPromotionName(null);
+            response.setPromotionStartDate(null);
+            response.setPromotionExpiryDate(null);
+        }
+    }
+
+    private Map<String, String> loadUserNames(List<Product> products) {
+        Set<String> userIds = new HashSet<>();
+        for (Product product : products) {
+            addUserId(userIds, product.getSubmittedBy());
+            addUserId(userIds, product.getApprovedBy());
+        }
+        if (userIds.isEmpty()) return Map.of();
+
+        Map<String, String> names = new HashMap<>();
+        for (Object[] row : userRepository.findFullNamesByIdIn(userIds)) {
+            names.put((String) row[0], (String) row[1]);
+        }
+        return names;
+    }
+
+    private static void addUserId(Set<String> userIds, User user) {
+        if (user != null && user.getId() != null) userIds.add(user.getId());
+    }
+}
@@ -0,0 +1,270 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.entity.Product;
+import com.lila_shop.backend.enums.ProductStatus;
+import com.lila_shop.backend.event.ProductChangedEvent;
+import com.lila_shop.backend.repository.ProductRepository;
+import com.lila_shop.backend.util.TextNormalizer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index trong bộ nhớ cho sản phẩm đã duyệt (name, brand, description, ingredients),
+// bỏ dấu tiếng Việt và xếp hạng theo BM25. Thay cho LIKE '%kw%' quét toàn bảng.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Trọng số theo trường: khớp ở tên quan trọng hơn khớp ở mô tả
+    private static final int NAME_WEIGHT = 3;
+    private static final int BRAND_WEIGHT = 2;
+    private static final int TEXT_WEIGHT = 1;
+
+    // Từ cuối của query được mở rộng theo tiền tố (người dùng đang gõ dở)
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+
+    private final ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    // term -> (productId -> tần suất có trọng số)
+    private NavigableMap<String, Map<String, Integer>> postings = new TreeMap<>();
+
+    // productId -> (term -> tần suất), dùng để gỡ document cũ khi cập nhật
+    private Map<String, Map<String, Integer>> documents = new HashMap<>();
+
+    // productId -> độ dài document (tổng tần suất có trọng số)
+    private Map<String, Integer> documentLengths = new HashMap<>();
+
+    private long totalLength;
+
+    private volatile boolean ready;
+
+    // Thay đổi 1 sản phẩm; terms = null là gỡ khỏi index
+    private record PendingChange(String productId, Map<String, Integer> terms) {}
+
+    // Thay đổi phát sinh trong lúc rebuild đọc DB: áp dụng lại vào index mới trước khi thay thế
+    private List<PendingChange> pending;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    // Rebuild định kỳ để nhận thay đổi từ node khác hoặc không đi qua ProductService
+    @Scheduled(cron = "${app.search.rebuild-cron:0 0 * * * *}")
+    public void rebuild() {
+        // Rebuild lúc khởi động và theo cron có thể chạy chồng nhau: rebuild sau sẽ thay pending
+        // của rebuild trước nên chạy lần lượt
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            try {
+                NavigableMap<String, Map<String, Integer>> newPostings = new TreeMap<>();
+                Map<String, Map<String, Integer>> newDocuments = new HashMap<>();
+                Map<String, Integer> newDocumentLengths = new HashMap<>();
+                long newTotalLength = 0;
+
+                for (Product product : productRepository.findByStatus(ProductStatus.APPROVED)) {
+                    Map<String, Integer> terms = analyze(product);
+                    int length = length(terms);
+                    newDocuments.put(product.getId(), terms);
+                    newDocumentLengths.put(product.getId(), length);
+                    newTotalLength += length;
+                    addPostings(newPostings, product.getId(), terms);
+                }
+
+                lock.writeLock().lock();
+                try {
+                    postings = newPostings;
+                    documents = newDocuments;
+                    documentLengths = newDocumentLengths;
+                    totalLength = newTotalLength;
+                    for (PendingChange change : pending) {
+                        apply(change.productId(), change.terms());
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                ready = true;
+                log.info("Product search index built: {} products, {} terms", newDocuments.size(), newPostings.size());
+            } catch (Exception e) {
+                log.error("Cannot build product search index: {}", e.getMessage(), e);
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    // Cập nhật index sau khi transaction ghi sản phẩm commit
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        productRepository
+                .findById(event.getProductId())
+                .ifPresentOrElse(this::index, () -> remove(event.getProductId()));
+    }
+
+    public void index(Product product) {
+        if (product.getStatus() != ProductStatus.APPROVED) {
+            remove(product.getId());
+            return;
+        }
+
+        change(product.getId(), analyze(product));
+    }
+
+    public void remove(String productId) {
+        change(productId, null);
+    }
+
+    private void change(String productId, Map<String, Integer> terms) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) pending.add(new PendingChange(productId, terms));
+            apply(productId, terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(String productId, Map<String, Integer> terms) {
+        removeInternal(productId);
+        if (terms == null) return;
+        int length = length(terms);
+        documents.put(productId, terms);
+        documentLengths.put(productId, length);
+        totalLength += length;
+        addPostings(postings, productId, terms);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Trả về productId xếp theo điểm BM25 giảm dần; mọi từ trong query đều phải khớp
+    public List<String> search(String query, int limit) {
+        List<String> queryTerms = TextNormalizer.tokenize(query);
+        if (queryTerms.isEmpty()) return List.of();
+
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty()) return List.of();
+            double avgLength = (double) totalLength / documents.size();
+
+            Map<String, Double> scores = null;
+            for (int i = 0; i < queryTerms.size(); i++) {
+                String term = queryTerms.get(i);
+                boolean expandPrefix = i == queryTerms.size() - 1 && term.length() >= MIN_PREFIX_LENGTH;
+
+                Map<String, Double> termScores = scoreTerm(term, expandPrefix, avgLength);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    Map<String, Double> current = scores;
+                    current.keySet().retainAll(termScores.keySet());
+                    current.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) return List.of();
+            }
+
+            List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<String, Double>comparingByValue()
+                    .reversed()
+                    .thenComparing(Map.Entry.<String, Double>comparingByKey()));
+            return ranked.stream().limit(limit).map(Map.Entry::getKey).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Double> scoreTerm(String term, boolean expandPrefix, double avgLength) {
+        Map<String, Double> scores = new HashMap<>();
+        NavigableMap<String, Map<String, Integer>> matches = expandPrefix
+                ? postings.subMap(term, true, term + Character.MAX_VALUE, true)
+                : postings.subMap(term, true, term, true);
+
+        int expansions = 0;
+        for (Map<String, Integer> docs : matches.values()) {
+            if (++expansions > MAX_PREFIX_EXPANSIONS) break;
+
+            double idf = Math.log(1 + (documents.size() - docs.size() + 0.5) / (docs.size() + 0.5));
+            for (Map.Entry<String, Integer> posting : docs.entrySet()) {
+                int docLength = documentLengths.getOrDefault(posting.getKey(), 0);
+                double tf = posting.getValue();
+                double score = idf * (tf * (K1 + 1)) / (tf + K1 * (1 - B + B * docLength / avgLength));
+                // Một document khớp nhiều từ mở rộng thì lấy điểm cao nhất
+                scores.merge(posting.getKey(), score, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private void removeInternal(String productId) {
+        Map<String, Integer> terms = documents.remove(productId);
+        if (terms == null) return;
+
+        Integer length = documentLengths.remove(productId);
+        totalLength -= length != null ? length : 0;
+        for (String term : terms.keySet()) {
+            Map<String, Integer> docs = postings.get(term);
+            if (docs == null) continue;
+            docs.remove(productId);
+            if (docs.isEmpty()) postings.remove(term);
+        }
+    }
+
+    private static void addPostings(
+            NavigableMap<String, Map<String, Integer>> target, String productId, Map<String, Integer> terms) {
+        terms.forEach((term, tf) ->
+                target.computeIfAbsent(term, k -> new HashMap<>()).put(productId, tf));
+    }
+
+    private static Map<String, Integer> analyze(Product product) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, product.getName(), NAME_WEIGHT);
+        addTerms(terms, product.getBrand(), BRAND_WEIGHT);
+        addTerms(terms, product.getDescription(), TEXT_WEIGHT);
+        addTerms(terms, product.getIngredients(), TEXT_WEIGHT);
+        return terms;
+    }
+
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private static int length(Map<String, Integer> terms) {
+        int length = 0;
+        for (int tf : terms.values()) length += tf;
+        return length;
+    }
+}
@@ -1,36 +1,56 @@
 package com.lila_shop.backend.service;
 
 import com.lila_shop.backend.dto.request.ApproveProductRequest;
+import com.lila_shop.backend.dto.request.ProductFacetFilterRequest;
 import com.lila_shop.backend.dto.request.ProductCreationRequest;
 import com.lila_shop.backend.dto.request.ProductRestockRequest;
 import com.lila_shop.backend.dto.request.ProductUpdateRequest;
+import com.lila_shop.backend.dto.response.ProductFacetResponse;
+import com.lila_shop.backend.dto.response.ProductListPageResponse;
+import com.lila_shop.backend.dto.response.ProductPageResponse;
 import com.lila_shop.backend.dto.response.ProductResponse;
+import com.lila_shop.backend.dto.response.ProductSuggestionResponse;
 import com.lila_shop.backend.entity.*;
+import com.lila_shop.backend.enums.ProductSortOrder;
 import com.lila_shop.backend.enums.ProductStatus;
 import com.lila_shop.backend.enums.PromotionStatus;
+import com.lila_shop.backend.event.ProductChangedEvent;
 import com.lila_shop.backend.exception.AppException;
 import com.lila_shop.backend.exception.ErrorCode;
 import com.lila_shop.backend.mapper.ProductMapper;
 import com.lila_shop.backend.repository.*;
+import com.lila_shop.backend.util.CursorUtil;
 import com.lila_shop.backend.util.SecurityUtil;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -49,6 +69,33 @@ public class ProductService {
     ProductMapper productMapper;
     PromotionService promotionService;
     FileStorageService fileStorageService;
+    ProductSearchIndex productSearchIndex;
+    ProductFacetIndex productFacetIndex;
+    ProductResponseAssembler productResponseAssembler;
+    CategoryTreeCache categoryTreeCache;
+    ActivePromotionIndex activePromotionIndex;
+    EffectivePriceStore effectivePriceStore;
+    ApplicationEventPublisher eventPublisher;
+    JsonStreamingService jsonStreamingService;
+    ProductDetailCache productDetailCache;
+    ProductSuggestIndex productSuggestIndex;
+    BestSellerRanking bestSellerRanking;
+    CoPurchaseIndex coPurchaseIndex;
+
+    // Giá trị sentinel cho trang đầu của phân trang keyset (DATETIME lớn nhất của MySQL)
+    private static final LocalDateTime MAX_CURSOR_DATE_TIME = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    @NonFinal
+    @Value("${app.product-page.default-size:20}")
+    int defaultPageSize;
+
+    @NonFinal
+    @Value("${app.product-page.max-size:100}")
+    int maxPageSize;
+
+    @NonFinal
+    @Value("${app.search.max-results:200}")
+    int maxSearchResults;
 
     // ========== CREATE OPERATIONS ==========
     @Transactional
@@ -83,6 +130,13 @@ public class ProductService {
         product.setCreatedAt(LocalDateTime.now());
         product.setUpdatedAt(LocalDateTime.now());
         product.setQuantitySold(0);
+        product.setReviewCount(0);
+        product.setRatingSum(0L);
+        product.setRating1Count(0);
+        product.setRating2Count(0);
+        product.setRating3Count(0);
+        product.setRating4Count(0);
+        product.setRating5Count(0);
 
         // Staff tự động approve sản phẩm khi tạo
         product.setStatus(ProductStatus.APPROVED);
@@ -160,6 +214,7 @@ public class ProductService {
             savedProduct = productRepository.findById(savedProduct.getId())
                     .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_EXISTED));
 
+            eventPublisher.publishEvent(new ProductChangedEvent(savedProduct.getId()));
             return productMapper.toResponse(savedProduct);
         } catch (DataIntegrityViolationException e) {
             log.error("Data integrity violation when creating product", e);
@@ -350,6 +405,7 @@ public class ProductService {
 
         Product savedProduct = productRepository.save(product);
         log.info("Product updated: {} by user: {}", productId, user.getEmail());
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
         return productMapper.toResponse(savedProduct);
     }
 
@@ -388,6 +444,7 @@ public class ProductService {
 
         product.setUpdatedAt(LocalDateTime.now());
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
         return productMapper.toResponse(savedProduct);
     }
 
@@ -484,10 +541,15 @@ public class ProductService {
         // 9. Xóa product
         productRepository.delete(product);
         log.info("Product deleted: {} by user: {}", productId, user.getEmail());
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
     }
 
     // ========== READ OPERATIONS ==========
     public ProductResponse getProductById(String productId) {
+        return productDetailCache.get(productId, () -> loadProductDetail(productId));
+    }
+
+    private ProductResponse loadProductDetail(String productId) {
         Product product = productRepository
                 .findByIdWithRelations(productId)
                 .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_EXISTED));
@@ -503,7 +565,13 @@ public class ProductService {
             product.setPromotion(null);
         }
 
-        return productMapper.toResponse(product);
+        ProductResponse response = productMapper.toResponse(product);
+        EffectivePriceStore.EffectivePrice price = effectivePriceStore.getProductPrice(productId);
+        if (price != null) {
+            response.setPrice(price.getPrice());
+            response.setDiscountValue(price.getDiscountValue());
+        }
+        return response;
     }
 
     // Tìm promotion đang active cho sản phẩm (theo product trực tiếp hoặc theo
@@ -520,24 +588,15 @@ public class ProductService {
             }
         }
 
-        // 2. Tìm promotion active theo product ID (từ promotion_products table)
-        if (product.getId() != null) {
-            List<Promotion> productPromotions = promotionRepository.findActiveByProductId(product.getId(), today);
-            activePromotions.addAll(productPromotions);
-        }
-
-        // 3. Tìm promotion active theo category
-        if (product.getCategory() != null && product.getCategory().getId() != null) {
-            List<Promotion> categoryPromotions = promotionRepository
-                    .findActiveByCategoryId(product.getCategory().getId(), today);
-            activePromotions.addAll(categoryPromotions);
+        // 2. Tìm promotion active theo product ID và category từ index trong bộ nhớ (không query)
+        String categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        Promotion indexedPromo = activePromotionIndex.findActivePromotion(product.getId(), categoryId, today);
+        if (indexedPromo != null) {
+            activePromotions.add(indexedPromo);
         }
 
-        // Loại bỏ trùng lặp và lấy promotion có startDate sớm nhất (ưu tiên promotion
-        // bắt đầu sớm hơn)
+        // Lấy promotion có startDate sớm nhất (ưu tiên promotion bắt đầu sớm hơn)
         return activePromotions.stream()
-                .distinct()
-                .filter(p -> isPromotionActive(p, today))
                 .min(Comparator.comparing(Promotion::getStartDate,
                         Comparator.nullsLast(Comparator.naturalOrder())))
                 .orElse(null);
@@ -552,7 +611,7 @@ public class ProductService {
         if (promotion.getStatus() != PromotionStatus.APPROVED) {
             return false;
         }
-        if (!promotion.getIsActive()) {
+        if (!Boolean.TRUE.equals(promotion.getIsActive())) {
             return false;
         }
 
@@ -567,68 +626,214 @@ public class ProductService {
         return true;
     }
 
-    public List<ProductResponse> getAllProducts() {
-        List<Product> products = productRepository.findAll();
-        return products.stream().map(productMapper::toResponse).toList();
+    // Ghi toàn bộ sản phẩm theo lô: mỗi lô map bằng assembler (media/variants/tên user load theo lô)
+    public StreamingResponseBody streamAllProducts() {
+        return jsonStreamingService.stream(
+                productRepository::streamAllWithRelations, productResponseAssembler::toResponses);
     }
 
     public List<ProductResponse> getActiveProducts() {
         // Chỉ lấy products có status APPROVED (không lấy DISABLED)
         List<Product> products = productRepository.findByStatus(ProductStatus.APPROVED);
-        return products.stream().map(productMapper::toResponse).toList();
+        return productResponseAssembler.toResponses(products);
     }
 
-    public List<ProductResponse> getProductsByCategory(String categoryId) {
-        // Lấy tất cả category IDs bao gồm cả danh mục con
-        List<String> categoryIds = new ArrayList<>();
-        categoryIds.add(categoryId);
-
-        // Lấy tất cả danh mục con (recursive)
-        List<Category> subCategories = categoryRepository.findByParentCategoryId(categoryId);
-        collectAllSubCategoryIds(subCategories, categoryIds);
-
-        // Lấy tất cả sản phẩm thuộc category và các sub-categories
-        List<Product> products = new ArrayList<>();
-        for (String id : categoryIds) {
-            products.addAll(productRepository.findByCategoryId(id));
+    // Phân trang keyset (cursor) cho tất cả sản phẩm
+    public ProductPageResponse getProductsPage(ProductSortOrder sort, String cursor, Integer size) {
+        return findProductsPage(EnumSet.allOf(ProductStatus.class), sort, cursor, size);
+    }
+
+    // Phân trang keyset (cursor) cho sản phẩm APPROVED
+    public ProductPageResponse getActiveProductsPage(ProductSortOrder sort, String cursor, Integer size) {
+        return findProductsPage(EnumSet.of(ProductStatus.APPROVED), sort, cursor, size);
+    }
+
+    private ProductPageResponse findProductsPage(
+            Set<ProductStatus> statuses, ProductSortOrder sort, String cursor, Integer size) {
+        ProductSortOrder sortOrder = sort != null ? sort : ProductSortOrder.NEWEST;
+        int pageSize = (size == null || size <= 0) ? defaultPageSize : Math.min(size, maxPageSize);
+
+        // Lấy dư 1 phần tử để biết còn trang tiếp theo hay không
+        var limit = PageRequest.of(0, pageSize + 1);
+        String[] position = (cursor != null && !cursor.isBlank()) ? CursorUtil.decode(cursor, sortOrder.name()) : null;
+
+        List<Product> products;
+        try {
+            products = switch (sortOrder) {
+                case NEWEST -> productRepository.findPageOrderByCreatedAtDesc(
+                        statuses,
+                        position != null ? LocalDateTime.parse(position[0]) : MAX_CURSOR_DATE_TIME,
+                        position != null ? position[1] : "",
+                        limit);
+                case PRICE_ASC -> productRepository.findPageOrderByPriceAsc(
+                        statuses,
+                        position != null ? Double.valueOf(position[0]) : -Double.MAX_VALUE,
+                        position != null ? position[1] : "",
+                        limit);
+                case PRICE_DESC -> productRepository.findPageOrderByPriceDesc(
+                        statuses,
+                        position != null ? Double.valueOf(position[0]) : Double.MAX_VALUE,
+                        position != null ? position[1] : "",
+                        limit);
+                case BEST_SELLING -> productRepository.findPageOrderByQuantitySoldDesc(
+                        statuses,
+                        position != null ? Integer.valueOf(position[0]) : Integer.MAX_VALUE,
+                        position != null ? position[1] : "",
+                        limit);
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new AppException(ErrorCode.BAD_REQUEST);
         }
 
-        return products.stream()
-                .filter(p -> p.getStatus() == ProductStatus.APPROVED)
-                .distinct() // Loại bỏ trùng lặp nếu có
-                .map(productMapper::toResponse)
+        boolean hasNext = products.size() > pageSize;
+        List<Product> page = hasNext ? products.subList(0, pageSize) : products;
+
+        String nextCursor = null;
+        if (hasNext) {
+            Product last = page.get(page.size() - 1);
+            Object value = switch (sortOrder) {
+                case NEWEST -> last.getCreatedAt();
+                case PRICE_ASC, PRICE_DESC -> last.getPrice();
+                case BEST_SELLING -> last.getQuantitySold() != null ? last.getQuantitySold() : 0;
+            };
+            nextCursor = CursorUtil.encode(sortOrder.name(), value, last.getId());
+        }
+
+        return ProductPageResponse.builder()
+                .products(productResponseAssembler.toResponses(page))
+                .nextCursor(nextCursor)
+                .sort(sortOrder.name())
+                .pageSize(pageSize)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    public List<ProductResponse> getProductsByCategory(String categoryId) {
+        // Category và toàn bộ danh mục con cháu lấy từ cây trong bộ nhớ, sản phẩm lấy bằng 1 query IN
+        Set<String> categoryIds = categoryTreeCache.getDescendantIds(categoryId);
+        List<Product> products = productRepository.findByCategoryIdInAndStatus(categoryIds, ProductStatus.APPROVED);
+        return productResponseAssembler.toResponses(products);
+    }
+
+    public ProductListPageResponse getProductsByCategoryPage(String categoryId, Integer page, Integer size) {
+        int pageNumber = (page == null || page < 0) ? 0 : page;
+        int pageSize = (size == null || size <= 0) ? defaultPageSize : Math.min(size, maxPageSize);
+
+        Set<String> categoryIds = categoryTreeCache.getDescendantIds(categoryId);
+        Page<Product> productPage = productRepository.findByCategoryIdInAndStatus(
+                categoryIds,
+                ProductStatus.APPROVED,
+                PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"))));
+
+        return ProductListPageResponse.builder()
+                .products(productResponseAssembler.toResponses(productPage.getContent()))
+                .totalElements(productPage.getTotalElements())
+                .totalPages(productPage.getTotalPages())
+                .currentPage(productPage.getNumber())
+                .pageSize(productPage.getSize())
+                .hasNext(productPage.hasNext())
+                .hasPrevious(productPage.hasPrevious())
+                .build();
+    }
+
+    // Sản phẩm thường được mua cùng, xếp theo số đơn mua chung (ma trận trong bộ nhớ, không đọc order_items)
+    public List<ProductResponse> getBoughtTogether(String productId, int limit) {
+        List<String> relatedIds = coPurchaseIndex.related(productId, Math.max(1, limit));
+        if (relatedIds.isEmpty()) return List.of();
+
+        Map<String, Product> productsById = productRepository.findAllWithRelationsByIdIn(relatedIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return productResponseAssembler.toResponses(relatedIds.stream()
+                .map(productsById::get)
+                .filter(p -> p != null && p.getStatus() == ProductStatus.APPROVED)
+                .toList());
+    }
+
+    // Sản phẩm bán chạy theo bảng xếp hạng trong bộ nhớ; categoryId gồm cả danh mục con
+    public ProductListPageResponse getBestSellers(String categoryId, Integer page, Integer size) {
+        int pageNumber = (page == null || page < 0) ? 0 : page;
+        int pageSize = (size == null || size <= 0) ? defaultPageSize : Math.min(size, maxPageSize);
+
+        Set<String> categoryIds = categoryId != null && !categoryId.isBlank()
+                ? categoryTreeCache.getDescendantIds(categoryId)
+                : Set.of();
+        BestSellerRanking.RankPage rankPage = bestSellerRanking.page(categoryIds, pageNumber, pageSize);
+
+        // Load theo lô rồi giữ nguyên thứ tự xếp hạng
+        List<String> rankedIds = rankPage.getProductIds();
+        Map<String, Product> productsById = productRepository.findAllWithRelationsByIdIn(rankedIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Product> products = rankedIds.stream()
+                .map(productsById::get)
+                .filter(p -> p != null && p.getStatus() == ProductStatus.APPROVED)
                 .toList();
+
+        int totalPages = (int) ((rankPage.getTotalElements() + pageSize - 1) / pageSize);
+        return ProductListPageResponse.builder()
+                .products(productResponseAssembler.toResponses(products))
+                .totalElements(rankPage.getTotalElements())
+                .totalPages(totalPages)
+                .currentPage(pageNumber)
+                .pageSize(pageSize)
+                .hasNext(pageNumber + 1 < totalPages)
+                .hasPrevious(pageNumber > 0)
+                .build();
     }
 
-    // Thu thập tất cả category IDs từ danh sách categories và các sub-categories
-    // của chúng
-    private void collectAllSubCategoryIds(List<Category> categories, List<String> categoryIds) {
-        for (Category category : categories) {
-            if (category.getId() != null && !categoryIds.contains(category.getId())) {
-                categoryIds.add(category.getId());
-                // Lấy sub-categories của category này
-                List<Category> subCategories = categoryRepository.findByParentCategoryId(category.getId());
-                if (!subCategories.isEmpty()) {
-                    collectAllSubCategoryIds(subCategories, categoryIds);
-                }
-            }
+    public List<ProductResponse> searchProducts(String keyword) {
+        // Index chưa build xong (lúc khởi động) thì tạm dùng query LIKE
+        if (!productSearchIndex.isReady()) {
+            List<Product> products = productRepository.findByKeyword(keyword);
+            return productResponseAssembler.toResponses(products.stream()
+                    .filter(p -> p.getStatus() == ProductStatus.APPROVED)
+                    .toList());
         }
+
+        // Lấy productId theo thứ tự điểm BM25 rồi load theo lô, giữ nguyên thứ tự xếp hạng
+        List<String> rankedIds = productSearchIndex.search(keyword, maxSearchResults);
+        Map<String, Product> productsById = productRepository.findAllWithRelationsByIdIn(rankedIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        return productResponseAssembler.toResponses(rankedIds.stream()
+                .map(productsById::get)
+                .filter(p -> p != null && p.getStatus() == ProductStatus.APPROVED)
+                .toList());
     }
 
-    public List<ProductResponse> searchProducts(String keyword) {
-        List<Product> products = productRepository.findByKeyword(keyword);
-        return products.stream()
-                .filter(p -> p.getStatus() == ProductStatus.APPROVED)
-                .map(productMapper::toResponse)
-                .toList();
+    // Gợi ý khi gõ: tra trie trong bộ nhớ, không query DB
+    public List<ProductSuggestionResponse> suggest(String query, int limit) {
+        return productSuggestIndex.suggest(query, Math.max(1, limit));
+    }
+
+    // Lọc kết hợp brand/skinType/skinConcern/origin/category/giá qua bitmap trong bộ nhớ, kèm facet count
+    public ProductFacetResponse filterProducts(ProductFacetFilterRequest request) {
+        int page = (request.getPage() == null || request.getPage() < 0) ? 0 : request.getPage();
+        int size = (request.getSize() == null || request.getSize() <= 0)
+                ? defaultPageSize
+                : Math.min(request.getSize(), maxPageSize);
+
+        ProductFacetIndex.FacetResult result = productFacetIndex.filter(request, page, size);
+        List<String> ids = result.getProductIds();
+        Map<String, Product> productsById = productRepository.findAllWithRelationsByIdIn(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        return ProductFacetResponse.builder()
+                .products(productResponseAssembler.toResponses(ids.stream()
+                        .map(productsById::get)
+                        .filter(p -> p != null && p.getStatus() == ProductStatus.APPROVED)
+                        .toList()))
+                .totalElements(result.getTotalElements())
+                .currentPage(page)
+                .pageSize(size)
+                .facets(result.getFacets())
+                .build();
     }
 
     public List<ProductResponse> getProductsByPriceRange(Double minPrice, Double maxPrice) {
         List<Product> products = productRepository.findByPriceRange(minPrice, maxPrice);
-        return products.stream()
+        return productResponseAssembler.toResponses(products.stream()
                 .filter(p -> p.getStatus() == ProductStatus.APPROVED)
-                .map(productMapper::toResponse)
-                .toList();
+                .toList());
     }
 
     public List<ProductResponse> getMyProducts() {
@@ -637,13 +842,13 @@ public class ProductService {
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
 
         List<Product> products = productRepository.findBySubmittedBy(user);
-        return products.stream().map(productMapper::toResponse).toList();
+        return productResponseAssembler.toResponses(products);
     }
 
     @PreAuthorize("hasRole('ADMIN')")
     public List<ProductResponse> getPendingProducts() {
         List<Product> products = productRepository.findByStatus(ProductStatus.PENDING);
-        return products.stream().map(productMapper::toResponse).toList();
+        return productResponseAssembler.toResponses(products);
     }
 
     // ========== APPROVAL OPERATIONS ==========
@@ -691,6 +896,7 @@ public class ProductService {
         }
 
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(savedProduct.getId()));
         return productMapper.toResponse(savedProduct);
     }
 
@@ -733,6 +939,7 @@ public class ProductService {
         // Update product defaultMedia reference
         product.setDefaultMedia(media);
         Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
         return productMapper.toResponse(saved);
     }
 
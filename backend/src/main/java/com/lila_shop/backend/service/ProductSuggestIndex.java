@@ -0,0 +1,250 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.dto.response.ProductSuggestionResponse;
+import com.lila_shop.backend.enums.ProductStatus;
+import com.lila_shop.backend.event.ProductChangedEvent;
+import com.lila_shop.backend.repository.CategoryRepository;
+import com.lila_shop.backend.repository.ProductRepository;
+import com.lila_shop.backend.util.TextNormalizer;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Gợi ý khi gõ ô tìm kiếm: trie tiền tố (đã bỏ dấu) trên tên sản phẩm, thương hiệu và tên danh mục.
+// Mỗi node giữ sẵn top-K gợi ý theo lượt bán nên 1 lần tra chỉ tốn O(độ dài query).
+// Khóa gồm cả phần đuôi bắt đầu từ mỗi từ, vd "chong nang" khớp "Kem chống nắng".
+// Trie dựng lại toàn bộ rồi thay thế (không sửa tại chỗ): khi sản phẩm đổi thì đánh dấu dirty và
+// dựng lại theo chu kỳ ngắn, ngoài ra dựng lại định kỳ để nhận lượt bán mới.
+@Slf4j
+@Component
+public class ProductSuggestIndex {
+    // Độ sâu tối đa của trie; query dài hơn thì lọc thêm trên kết quả của node sâu nhất
+    private static final int MAX_KEY_LENGTH = 32;
+    // Số vị trí bắt đầu từ tối đa được đưa vào trie cho mỗi tên
+    private static final int MAX_WORD_STARTS = 8;
+
+    private static final Comparator<Suggestion> BY_SOLD = Comparator
+            .comparingLong((Suggestion s) -> s.quantitySold)
+            .reversed()
+            .thenComparing(s -> s.name);
+
+    @AllArgsConstructor
+    private static class Suggestion {
+        String type;
+        String id;
+        String name;
+        String folded;
+        long quantitySold;
+    }
+
+    private static class Node {
+        Map<Character, Node> children = new HashMap<>();
+        // index trong mảng suggestions, sắp theo lượt bán giảm dần
+        int[] top = new int[0];
+        // Chỉ dùng khi build: các gợi ý có khóa kết thúc tại node này
+        List<Integer> terminals;
+    }
+
+    @AllArgsConstructor
+    private static class Snapshot {
+        Node root;
+        List<Suggestion> suggestions;
+    }
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final int topK;
+
+    private volatile Snapshot snapshot;
+    private volatile boolean dirty;
+
+    public ProductSuggestIndex(
+            ProductRepository productRepository,
+            CategoryRepository categoryRepository,
+            @Value("${app.suggest.top-k:10}") int topK) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.topK = Math.max(1, topK);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    // Dựng lại toàn bộ định kỳ để cập nhật lượt bán (đơn hàng không phát ProductChangedEvent)
+    @Scheduled(cron = "${app.suggest.rebuild-cron:0 10 * * * *}")
+    public void rebuild() {
+        try {
+            dirty = false;
+            snapshot = load();
+        } catch (Exception e) {
+            dirty = true;
+            log.error("Cannot build product suggest index: {}", e.getMessage(), e);
+        }
+    }
+
+    // Nhiều sản phẩm đổi liên tiếp (vd: áp promotion) chỉ dẫn tới 1 lần dựng lại
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        dirty = true;
+    }
+
+    // Danh mục tạo/đổi tên/ngừng hoạt động (không phát ProductChangedEvent). Trong transaction thì đánh dấu
+    // sau commit, tránh lần dựng lại chạy trước commit đọc dữ liệu cũ rồi xóa cờ
+    public void markDirty() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirty = true;
+                }
+            });
+        } else {
+            dirty = true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.suggest.refresh-ms:30000}")
+    public void rebuildIfDirty() {
+        if (dirty) rebuild();
+    }
+
+    public List<ProductSuggestionResponse> suggest(String query, int limit) {
+        Snapshot current = snapshot;
+        String key = normalize(query);
+        if (current == null || key.isEmpty()) return List.of();
+
+        Node node = current.root;
+        int depth = Math.min(key.length(), MAX_KEY_LENGTH);
+        for (int i = 0; i < depth && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node == null) return List.of();
+
+        boolean truncated = key.length() > MAX_KEY_LENGTH;
+        List<ProductSuggestionResponse> results = new ArrayList<>();
+        for (int index : node.top) {
+            if (results.size() >= limit) break;
+            Suggestion suggestion = current.suggestions.get(index);
+            if (truncated && !suggestion.folded.contains(key)) continue;
+            results.add(ProductSuggestionResponse.builder()
+                    .type(suggestion.type)
+                    .id(suggestion.id)
+                    .name(suggestion.name)
+                    .quantitySold(suggestion.quantitySold)
+                    .build());
+        }
+        return results;
+    }
+
+    private Snapshot load() {
+        List<Suggestion> suggestions = new ArrayList<>();
+        // Gộp thương hiệu theo tên đã bỏ dấu, giữ cách viết gặp đầu tiên để hiển thị
+        Map<String, Suggestion> brands = new LinkedHashMap<>();
+        Map<String, Long> soldByCategory = new HashMap<>();
+
+        for (Object[] row : productRepository.findSuggestRowsByStatus(ProductStatus.APPROVED)) {
+            String id = (String) row[0];
+            String name = (String) row[1];
+            String brand = (String) row[2];
+            long sold = row[3] != null ? ((Number) row[3]).longValue() : 0L;
+            String categoryId = (String) row[4];
+
+            if (name != null && !name.isBlank()) {
+                suggestions.add(new Suggestion("PRODUCT", id, name, normalize(name), sold));
+            }
+            if (brand != null && !brand.isBlank()) {
+                String folded = normalize(brand);
+                if (!folded.isEmpty()) {
+                    brands.computeIfAbsent(folded, k -> new Suggestion("BRAND", null, brand.trim(), k, 0L))
+                            .quantitySold += sold;
+                }
+            }
+            if (categoryId != null) soldByCategory.merge(categoryId, sold, Long::sum);
+        }
+        suggestions.addAll(brands.values());
+
+        for (Object[] row : categoryRepository.findActiveIdAndName()) {
+            String id = (String) row[0];
+            String name = (String) row[1];
+            if (name == null || name.isBlank()) continue;
+            suggestions.add(new Suggestion(
+                    "CATEGORY", id, name, normalize(name), soldByCategory.getOrDefault(id, 0L)));
+        }
+
+        // Sắp trước theo lượt bán: index nhỏ hơn = xếp hạng cao hơn, top-K của node chỉ cần so sánh index
+        suggestions.sort(BY_SOLD);
+
+        Node root = new Node();
+        for (int i = 0; i < suggestions.size(); i++) {
+            for (String key : keys(suggestions.get(i).folded)) {
+                insert(root, key, i);
+            }
+        }
+        int nodes = computeTop(root);
+
+        log.info("Product suggest index built: {} suggestions, {} nodes", suggestions.size(), nodes);
+        return new Snapshot(root, suggestions);
+    }
+
+    private void insert(Node root, String key, int index) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+        }
+        if (node.terminals == null) node.terminals = new ArrayList<>();
+        node.terminals.add(index);
+    }
+
+    // Duyệt hậu thứ tự: top của node = K index nhỏ nhất trong gợi ý kết thúc tại node và top của các con
+    private int computeTop(Node node) {
+        int count = 1;
+        Set<Integer> candidates = new LinkedHashSet<>();
+        if (node.terminals != null) candidates.addAll(node.terminals);
+        for (Node child : node.children.values()) {
+            count += computeTop(child);
+            for (int index : child.top) candidates.add(index);
+        }
+        node.top = candidates.stream().mapToInt(Integer::intValue).sorted().limit(topK).toArray();
+        node.terminals = null;
+        return count;
+    }
+
+    // Khóa: chuỗi đầy đủ và phần đuôi bắt đầu từ mỗi từ, cắt ở MAX_KEY_LENGTH
+    private static Set<String> keys(String folded) {
+        Set<String> keys = new LinkedHashSet<>();
+        int start = 0;
+        int starts = 0;
+        while (start < folded.length() && starts < MAX_WORD_STARTS) {
+            String key = folded.substring(start);
+            keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+            starts++;
+            int space = folded.indexOf(' ', start);
+            if (space < 0) break;
+            start = space + 1;
+        }
+        return keys;
+    }
+
+    // Bỏ dấu, chữ thường, các từ cách nhau đúng 1 khoảng trắng
+    private static String normalize(String text) {
+        return String.join(" ", TextNormalizer.tokenize(text));
+    }
+}
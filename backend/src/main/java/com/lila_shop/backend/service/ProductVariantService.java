@@ -4,6 +4,7 @@ import com.lila_shop.backend.dto.request.ProductVariantRequest;
 import com.lila_shop.backend.dto.response.ProductVariantResponse;
 import com.lila_shop.backend.entity.Product;
 import com.lila_shop.backend.entity.ProductVariant;
+import com.lila_shop.backend.event.ProductChangedEvent;
 import com.lila_shop.backend.exception.AppException;
 import com.lila_shop.backend.exception.ErrorCode;
 import com.lila_shop.backend.repository.ProductRepository;
@@ -12,6 +13,7 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,6 +29,8 @@ public class ProductVariantService {
 
     ProductVariantRepository productVariantRepository;
     ProductRepository productRepository;
+    ApplicationEventPublisher eventPublisher;
+    FlashSaleInventory flashSaleInventory;
 
     private Product findProduct(String productId) {
         return productRepository.findById(productId)
@@ -34,6 +38,8 @@ public class ProductVariantService {
     }
 
     private ProductVariantResponse map(ProductVariant v) {
+        // Variant flash sale: tồn kho thực nằm trong bộ nhớ, DB được ghi trừ theo lô
+        Integer hotAvailable = flashSaleInventory.available(v.getId());
         return ProductVariantResponse.builder()
                 .id(v.getId())
                 .name(v.getName())
@@ -43,8 +49,9 @@ public class ProductVariantService {
                 .unitPrice(v.getUnitPrice())
                 .tax(v.getTax())
                 .purchasePrice(v.getPurchasePrice())
-                .stockQuantity(v.getStockQuantity())
+                .stockQuantity(hotAvailable != null ? hotAvailable : v.getStockQuantity())
                 .isDefault(v.getIsDefault())
+                .hotStock(hotAvailable != null)
                 .createdAt(v.getCreatedAt())
                 .updatedAt(v.getUpdatedAt())
                 .build();
@@ -104,6 +111,7 @@ public class ProductVariantService {
             }
         }
 
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
         return map(saved);
     }
 
@@ -113,6 +121,8 @@ public class ProductVariantService {
         findProduct(productId); // ensure product exists
         ProductVariant variant = productVariantRepository.findById(variantId)
                 .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_EXISTED)); // reuse code; or define new code
+        // Lưu cả entity sẽ ghi đè stock_quantity mà job flash sale đang trừ dần
+        requireNotHot(variant);
 
         variant.setName(req.getName());
         variant.setShadeName(req.getShadeName());
@@ -144,6 +154,7 @@ public class ProductVariantService {
             product.setUpdatedAt(LocalDateTime.now());
             productRepository.save(product);
         }
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
         return map(saved);
     }
 
@@ -153,10 +164,39 @@ public class ProductVariantService {
         findProduct(productId); // ensure product exists
         ProductVariant variant = productVariantRepository.findById(variantId)
                 .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_EXISTED));
+        requireNotHot(variant);
         productVariantRepository.delete(variant);
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
         log.info("Deleted variant {} for product {}", variantId, productId);
     }
 
+    // Bật/tắt chế độ flash sale cho variant. Không chạy trong transaction của service:
+    // FlashSaleInventory tự mở transaction riêng và chỉ đổi bộ đếm trong bộ nhớ sau khi commit
+    @PreAuthorize("hasRole('ADMIN')")
+    public ProductVariantResponse setHotStock(String productId, String variantId, boolean enabled) {
+        findProduct(productId);
+        ProductVariant variant = productVariantRepository.findById(variantId)
+                .filter(v -> v.getProduct() != null && productId.equals(v.getProduct().getId()))
+                .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_EXISTED));
+
+        if (enabled) {
+            flashSaleInventory.enable(variantId);
+        } else {
+            flashSaleInventory.disable(variantId);
+        }
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
+        log.info("Flash sale {} for variant {} of product {}", enabled ? "enabled" : "disabled", variantId, productId);
+
+        return map(productVariantRepository.findById(variantId).orElse(variant));
+    }
+
+    private void requireNotHot(ProductVariant variant) {
+        if (flashSaleInventory.isHot(variant.getId())) {
+            throw new AppException(ErrorCode.BAD_REQUEST,
+                    "Variant đang flash sale, vui lòng tắt flash sale trước khi sửa hoặc xóa");
+        }
+    }
+
     public List<ProductVariantResponse> getVariants(String productId) {
         findProduct(productId);
         return productVariantRepository.findByProductId(productId).stream().map(this::map).toList();
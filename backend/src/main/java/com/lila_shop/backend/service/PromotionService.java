@@ -11,6 +11,8 @@ import com.lila_shop.backend.entity.User;
 import com.lila_shop.backend.enums.DiscountApplyScope;
 import com.lila_shop.backend.enums.ProductStatus;
 import com.lila_shop.backend.enums.PromotionStatus;
+import com.lila_shop.backend.event.ProductChangedEvent;
+import com.lila_shop.backend.event.PromotionChangedEvent;
 import com.lila_shop.backend.exception.AppException;
 import com.lila_shop.backend.exception.ErrorCode;
 import com.lila_shop.backend.mapper.PromotionMapper;
@@ -23,6 +25,7 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -47,6 +50,8 @@ public class PromotionService {
     ProductRepository productRepository;
     PromotionMapper promotionMapper;
     FileStorageService fileStorageService;
+    ActivePromotionIndex activePromotionIndex;
+    ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public PromotionResponse createPromotion(PromotionCreationRequest request) {
@@ -75,6 +80,7 @@ public class PromotionService {
         applyScopeTargets(request.getApplyScope(), request.getCategoryIds(), request.getProductIds(), promotion);
 
         Promotion savedPromotion = promotionRepository.save(promotion);
+        eventPublisher.publishEvent(new PromotionChangedEvent(savedPromotion.getId()));
         log.info("Promotion created with ID: {} by staff: {}", savedPromotion.getId(), staff.getId());
 
         return promotionMapper.toResponse(savedPromotion);
@@ -123,6 +129,7 @@ public class PromotionService {
         }
 
         Promotion savedPromotion = promotionRepository.save(promotion);
+        eventPublisher.publishEvent(new PromotionChangedEvent(savedPromotion.getId()));
         return promotionMapper.toResponse(savedPromotion);
     }
 
@@ -215,6 +222,7 @@ public class PromotionService {
         if (wasApprovedAndActive) {
             applyPromotionToTargets(savedPromotion);
         }
+        eventPublisher.publishEvent(new PromotionChangedEvent(savedPromotion.getId()));
         // log.info("Promotion updated: {} by user: {}", promotionId, currentUserId);
 
         return promotionMapper.toResponse(savedPromotion);
@@ -253,6 +261,7 @@ public class PromotionService {
             if (product.getPromotion() != null && product.getPromotion().getId().equals(promotionId)) {
                 product.setPromotion(null);
                 productRepository.save(product);
+                eventPublisher.publishEvent(new ProductChangedEvent(product.getId()));
             }
         }
 
@@ -261,6 +270,7 @@ public class PromotionService {
 
         // 4. Xóa promotion
         promotionRepository.delete(promotion);
+        eventPublisher.publishEvent(new PromotionChangedEvent(promotionId));
         // log.info("Promotion deleted: {} by user: {}", promotionId, currentUserId);
     }
 
@@ -410,24 +420,12 @@ public class PromotionService {
             }
 
             // Kiểm tra các promotion khác có thể áp dụng cho sản phẩm này (theo product
-            // hoặc category)
-            List<Promotion> otherActivePromotions = new ArrayList<>();
-
-            // Tìm theo product
-            if (product.getId() != null) {
-                otherActivePromotions.addAll(
-                        promotionRepository.findActiveByProductId(product.getId(), today).stream()
-                                .filter(p -> !p.getId().equals(promotion.getId()))
-                                .toList());
-            }
-
-            // Tìm theo category
-            if (product.getCategory() != null && product.getCategory().getId() != null) {
-                otherActivePromotions.addAll(
-                        promotionRepository.findActiveByCategoryId(product.getCategory().getId(), today).stream()
-                                .filter(p -> !p.getId().equals(promotion.getId()))
-                                .toList());
-            }
+            // hoặc category), lấy từ index trong bộ nhớ
+            String categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+            List<Promotion> otherActivePromotions = activePromotionIndex
+                    .findCandidates(product.getId(), categoryId, today).stream()
+                    .filter(p -> !p.getId().equals(promotion.getId()))
+                    .toList();
 
             // Kiểm tra date range overlap với các promotion khác
             for (Promotion otherPromo : otherActivePromotions) {
@@ -655,6 +653,7 @@ public class PromotionService {
         }
 
         productRepository.saveAll(products);
+        publishPriceChanged(products);
     }
 
     /**
@@ -676,8 +675,8 @@ public class PromotionService {
         LocalDate today = LocalDate.now();
 
         // Tìm các promotion active theo category
-        List<Promotion> categoryPromotions = promotionRepository.findActiveByCategoryId(
-                product.getCategory().getId(), today);
+        List<Promotion> categoryPromotions = activePromotionIndex.findCandidates(
+                null, product.getCategory().getId(), today);
 
         if (categoryPromotions.isEmpty()) {
             return;
@@ -696,11 +695,19 @@ public class PromotionService {
         }
 
         // Chọn promotion có startDate sớm nhất
-        Promotion bestPromotion = activePromotions.stream()
+        Promotion candidate = activePromotions.stream()
                 .min(Comparator.comparing(Promotion::getStartDate,
                         Comparator.nullsLast(Comparator.naturalOrder())))
                 .orElse(null);
 
+        if (candidate == null) {
+            return;
+        }
+
+        // Bản trong index là detached dùng chung và có thể trễ: đọc lại trong transaction rồi kiểm tra lại
+        Promotion bestPromotion = promotionRepository.findById(candidate.getId())
+                .filter(p -> isActiveOn(p, today))
+                .orElse(null);
         if (bestPromotion == null) {
             return;
         }
@@ -753,6 +760,7 @@ public class PromotionService {
             refreshedProduct.setPromotion(bestPromotion);
 
             productRepository.save(refreshedProduct);
+            eventPublisher.publishEvent(new ProductChangedEvent(refreshedProduct.getId()));
         } catch (Exception e) {
             log.warn("Failed to apply category promotion {} to product {}: {}",
                     bestPromotion.getId(), product.getId(), e.getMessage());
@@ -790,8 +798,8 @@ public class PromotionService {
             double unitPrice = product.getUnitPrice() != null ? product.getUnitPrice() : 0.0;
             double tax = product.getTax() != null ? product.getTax() : 0.0; // tax là phần trăm (0.1 = 10%)
 
-            // Kiểm tra xem có promotion kế tiếp nào còn hiệu lực không
-            Promotion nextPromotion = findNextActivePromotionForProduct(product, today);
+            // Kiểm tra xem có promotion kế tiếp nào còn hiệu lực không (trừ chính promotion đang gỡ)
+            Promotion nextPromotion = findNextActivePromotionForProduct(product, promotion.getId(), today);
 
             if (nextPromotion != null) {
                 // Áp dụng promotion kế tiếp
@@ -808,42 +816,46 @@ public class PromotionService {
             }
         }
         productRepository.saveAll(products);
+        publishPriceChanged(products);
+    }
+
+    // Giá sản phẩm thay đổi: EffectivePriceStore và các index sản phẩm cập nhật sau commit
+    private void publishPriceChanged(List<Product> products) {
+        products.forEach(product -> eventPublisher.publishEvent(new ProductChangedEvent(product.getId())));
     }
 
     /**
      * Tìm promotion kế tiếp còn hiệu lực cho sản phẩm
      * (promotion có date range overlap hoặc tiếp nối với promotion hiện tại)
      */
-    private Promotion findNextActivePromotionForProduct(Product product, LocalDate today) {
-        // Tìm các promotion active cho sản phẩm này (theo product hoặc category)
-        List<Promotion> activePromotions = new ArrayList<>();
-
-        // Tìm theo product
-        if (product.getId() != null) {
-            activePromotions.addAll(promotionRepository.findActiveByProductId(product.getId(), today));
-        }
-
-        // Tìm theo category
-        if (product.getCategory() != null && product.getCategory().getId() != null) {
-            activePromotions.addAll(promotionRepository.findActiveByCategoryId(product.getCategory().getId(), today));
-        }
-
-        // Loại bỏ trùng lặp và sắp xếp theo startDate
-        return activePromotions.stream()
-                .distinct() // Loại bỏ trùng lặp
-                .filter(p -> p.getStatus() == PromotionStatus.APPROVED
-                        && (p.getIsActive())
-                        && (p.getExpiryDate() == null || !p.getExpiryDate().isBefore(today))
-                        && (p.getStartDate() == null || !p.getStartDate().isAfter(today)))
-                .min(Comparator.comparing(Promotion::getStartDate)) // Sắp xếp theo startDate
+    private Promotion findNextActivePromotionForProduct(Product product, String excludedPromotionId, LocalDate today) {
+        // Tìm các promotion active cho sản phẩm này (theo product hoặc category) từ index,
+        // danh sách đã sắp theo startDate
+        String categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        // Index giữ bản detached dùng chung và có thể trễ: đọc lại promotion trong transaction hiện tại
+        // (kiểm tra lại điều kiện) rồi gán bản managed đó cho product
+        return activePromotionIndex.findCandidates(product.getId(), categoryId, today).stream()
+                .filter(p -> !p.getId().equals(excludedPromotionId))
+                .filter(p -> p.getStartDate() == null || !p.getStartDate().isAfter(today))
+                .map(p -> promotionRepository.findById(p.getId()).orElse(null))
+                .filter(p -> p != null && isActiveOn(p, today))
+                .findFirst()
                 .orElse(null);
     }
 
+    private boolean isActiveOn(Promotion promotion, LocalDate today) {
+        return promotion.getStatus() == PromotionStatus.APPROVED
+                && Boolean.TRUE.equals(promotion.getIsActive())
+                && (promotion.getStartDate() == null || !promotion.getStartDate().isAfter(today))
+                && (promotion.getExpiryDate() == null || !promotion.getExpiryDate().isBefore(today));
+    }
+
     @Transactional
     public void detachPromotionFromProducts(Promotion promotion) {
         clearPromotionPricing(promotion);
         promotion.setIsActive(false);
         promotionRepository.save(promotion);
+        eventPublisher.publishEvent(new PromotionChangedEvent(promotion.getId()));
     }
 
     private void deleteMediaFileIfExists(Promotion promotion) {
@@ -0,0 +1,58 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+// Cộng lượt bán (product.quantitySold) cho đơn hàng vừa tạo.
+// Chạy sau khi transaction checkout commit, trong transaction ngắn riêng: UPDATE trên dòng product
+// không giữ khóa suốt quá trình tạo đơn, các đơn cùng sản phẩm không phải xếp hàng chờ nhau.
+// Đơn bị rollback thì không cộng.
+@Slf4j
+@Component
+public class QuantitySoldWriter {
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate requiresNewTransaction;
+
+    public QuantitySoldWriter(ProductRepository productRepository, PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // productId -> số lượng vừa bán
+    public void increment(Map<String, Integer> soldByProduct) {
+        if (soldByProduct == null || soldByProduct.isEmpty()) return;
+        // Sắp theo productId: các lần ghi đồng thời khóa dòng theo cùng thứ tự
+        Map<String, Integer> snapshot = new TreeMap<>(soldByProduct);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    write(snapshot);
+                }
+            });
+        } else {
+            write(snapshot);
+        }
+    }
+
+    private void write(Map<String, Integer> soldByProduct) {
+        try {
+            requiresNewTransaction.executeWithoutResult(status -> soldByProduct
+                    .forEach((productId, quantity) -> productRepository.adjustQuantitySold(productId, quantity)));
+        } catch (Exception e) {
+            // Đơn hàng đã commit; lượt bán chỉ dùng để hiển thị/xếp hạng nên không làm lỗi request
+            log.error("Cannot update quantity sold for {}: {}", soldByProduct, e.getMessage(), e);
+        }
+    }
+}
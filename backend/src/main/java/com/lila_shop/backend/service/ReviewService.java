@@ -23,6 +23,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -37,6 +38,9 @@ public class ReviewService {
     UserRepository userRepository;
     ProductRepository productRepository;
     ReviewMapper reviewMapper;
+    CatalogVersionTracker catalogVersionTracker;
+    JsonStreamingService jsonStreamingService;
+    ProductDetailCache productDetailCache;
     private final UserMapper userMapper;
 
     public ReviewResponse getReviewById(String reviewId) {
@@ -65,10 +69,9 @@ public class ReviewService {
     }
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('CUSTOMER_SUPPORT')")
-    public List<ReviewResponse> getAllReviews() {
-        List<Review> reviews = reviewRepository.findAll();
-
-        return reviews.stream().map(reviewMapper::toReviewResponse).toList();
+    public StreamingResponseBody getAllReviews() {
+        return jsonStreamingService.streamEach(
+                reviewRepository::streamAllWithRelations, reviewMapper::toReviewResponse);
     }
 
     @Transactional
@@ -107,6 +110,12 @@ public class ReviewService {
         review.setProduct(product);
 
         Review savedReview = reviewRepository.save(review);
+        // Cập nhật tổng hợp đánh giá trên product trong cùng transaction
+        if (savedReview.getRating() != null) {
+            productRepository.applyReviewRating(product.getId(), savedReview.getRating(), 1);
+            catalogVersionTracker.bump(CatalogVersionTracker.Area.PRODUCT);
+            productDetailCache.invalidate(product.getId());
+        }
         String reviewerInfo = user != null ? user.getEmail() : (request.getNameDisplay() != null ? request.getNameDisplay() : "Anonymous");
         log.info("Review created with ID: {} by: {}", savedReview.getId(), reviewerInfo);
 
@@ -138,6 +147,11 @@ public class ReviewService {
                 reviewRepository.findById(reviewId).orElseThrow(() -> new AppException(ErrorCode.REVIEW_NOT_EXISTED));
 
         reviewRepository.delete(review);
+        if (review.getProduct() != null && review.getRating() != null) {
+            productRepository.applyReviewRating(review.getProduct().getId(), review.getRating(), -1);
+            catalogVersionTracker.bump(CatalogVersionTracker.Area.PRODUCT);
+            productDetailCache.invalidate(review.getProduct().getId());
+        }
         log.info("Review deleted: {} by admin", reviewId);
     }
 }
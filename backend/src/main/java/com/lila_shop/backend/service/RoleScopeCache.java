@@ -0,0 +1,54 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.entity.Permission;
+import com.lila_shop.backend.repository.PermissionRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Cache role name -> chuỗi scope trong JWT ("ROLE_xxx perm1 perm2 ...").
+// Bị xóa khi RoleService/PermissionService thay đổi dữ liệu.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RoleScopeCache {
+    PermissionRepository permissionRepository;
+
+    Map<String, String> scopes = new ConcurrentHashMap<>();
+
+    public String getScope(String roleName) {
+        if (roleName == null) return "";
+        return scopes.computeIfAbsent(roleName, this::loadScope);
+    }
+
+    public void invalidate(String roleName) {
+        if (roleName != null) scopes.remove(roleName);
+    }
+
+    public void invalidateAll() {
+        scopes.clear();
+    }
+
+    // Làm mới định kỳ để nhận thay đổi role/permission từ node khác
+    @Scheduled(fixedDelayString = "${security.role-scope-cache.refresh-ms:300000}")
+    public void refresh() {
+        invalidateAll();
+    }
+
+    private String loadScope(String roleName) {
+        StringJoiner stringJoiner = new StringJoiner(" ");
+        stringJoiner.add("ROLE_" + roleName);
+        for (Permission permission : permissionRepository.findAllByRole_Name(roleName)) {
+            stringJoiner.add(permission.getName());
+        }
+        return stringJoiner.toString();
+    }
+}
@@ -22,6 +22,7 @@ public class RoleService {
     RoleRepository roleRepository;
     PermissionRepository permissionRepository;
     RoleMapper roleMapper;
+    RoleScopeCache roleScopeCache;
 
     public RoleResponse create(RoleRequest request) {
         var role = roleMapper.toRole(request);
@@ -30,6 +31,7 @@ public class RoleService {
         role.setPermissions(new HashSet<>(permissions));
 
         role = roleRepository.save(role);
+        roleScopeCache.invalidate(role.getName());
         return roleMapper.toRoleResponse(role);
     }
 
@@ -39,5 +41,6 @@ public class RoleService {
 
     public void delete(String role) {
         roleRepository.deleteById(role);
+        roleScopeCache.invalidate(role);
     }
 }
@@ -25,9 +25,9 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
-import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -43,6 +43,7 @@ public class UserService {
     PasswordGeneratorService passwordGeneratorService;
     BrevoEmailService brevoEmailService;
     FileStorageService fileStorageService;
+    JsonStreamingService jsonStreamingService;
 
     @NonFinal
     @Value("${app.default-avatar}")
@@ -307,9 +308,9 @@ public class UserService {
 
     // @EnableMethodSecurity trong SecurityConfig
     @PreAuthorize("hasRole('ADMIN')") // Spring tạo ra 1 proxy ngay trước khi tạo hàm. Sử dụng được nhờ khai báo
-    public List<UserResponse> getUsers() {
+    public StreamingResponseBody getUsers() {
 //        log.info("In method get Users");
-        return userRepository.findAll().stream().map(userMapper::toUserResponse).toList();
+        return jsonStreamingService.streamEach(userRepository::streamAll, userMapper::toUserResponse);
     }
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('CUSTOMER_SUPPORT')")
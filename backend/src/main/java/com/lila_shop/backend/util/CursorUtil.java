@@ -0,0 +1,35 @@
+package com.lila_shop.backend.util;
+
+import com.lila_shop.backend.exception.AppException;
+import com.lila_shop.backend.exception.ErrorCode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Mã hóa / giải mã cursor cho phân trang keyset: base64url("sort|value|id")
+public final class CursorUtil {
+    private static final String SEPARATOR = "|";
+
+    private CursorUtil() {
+    }
+
+    public static String encode(String sort, Object value, String id) {
+        String raw = sort + SEPARATOR + value + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Trả về [value, id]; cursor phải được tạo với cùng kiểu sắp xếp
+    public static String[] decode(String cursor, String expectedSort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // id đặt cuối nên split tối đa 3 phần, id có chứa '|' vẫn đúng
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3 || !parts[0].equals(expectedSort)) {
+                throw new AppException(ErrorCode.BAD_REQUEST);
+            }
+            return new String[] {parts[1], parts[2]};
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.BAD_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.lila_shop.backend.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Bộ đếm tồn kho không khóa, chia thành nhiều ô (stripe), mỗi ô giữ 1 phần số lượng.
+// Mỗi luồng bắt đầu từ ô của mình nên các CAS đồng thời ít khi đụng cùng 1 ô;
+// ô không đủ thì lấy từ ô khác, gom nhiều ô vẫn không đủ thì trả lại phần đã lấy (hết hàng).
+// Tổng các ô không bao giờ âm nên không bán vượt số lượng ban đầu.
+public class StripedStockCounter {
+    // Các ô cách nhau 16 int (64 byte) để không nằm chung cache line
+    private static final int SPACING = 16;
+
+    private final AtomicIntegerArray cells;
+    private final int mask;
+
+    public StripedStockCounter(int initial, int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes));
+        this.mask = size - 1;
+        this.cells = new AtomicIntegerArray(size * SPACING);
+        int stock = Math.max(0, initial);
+        for (int i = 0; i < size; i++) {
+            cells.set(i * SPACING, stock / size + (i < stock % size ? 1 : 0));
+        }
+    }
+
+    public boolean tryReserve(int quantity) {
+        if (quantity <= 0) return true;
+        int start = probe();
+
+        // Lấy trọn từ 1 ô
+        for (int i = 0; i <= mask; i++) {
+            int index = ((start + i) & mask) * SPACING;
+            int current;
+            while ((current = cells.get(index)) >= quantity) {
+                if (cells.compareAndSet(index, current, current - quantity)) return true;
+            }
+        }
+
+        // Gom từ nhiều ô
+        int taken = 0;
+        for (int i = 0; i <= mask && taken < quantity; i++) {
+            int index = ((start + i) & mask) * SPACING;
+            int current;
+            while ((current = cells.get(index)) > 0) {
+                int take = Math.min(current, quantity - taken);
+                if (cells.compareAndSet(index, current, current - take)) {
+                    taken += take;
+                    break;
+                }
+            }
+        }
+        if (taken == quantity) return true;
+        release(taken);
+        return false;
+    }
+
+    public void release(int quantity) {
+        if (quantity > 0) cells.getAndAdd((probe() & mask) * SPACING, quantity);
+    }
+
+    // Tổng các ô; chỉ chính xác khi không có thao tác đồng thời
+    public int available() {
+        int total = 0;
+        for (int i = 0; i <= mask; i++) {
+            total += cells.get(i * SPACING);
+        }
+        return total;
+    }
+
+    private static int probe() {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) * 0x9E3779B9;
+    }
+}
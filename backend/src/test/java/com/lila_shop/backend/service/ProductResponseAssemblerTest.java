@@ -0,0 +1,176 @@
+package com.lila_shop.backend.service;
+
+import com.lila_shop.backend.dto.response.ProductResponse;
+import com.lila_shop.backend.entity.Category;
+import com.lila_shop.backend.entity.Inventory;
+import com.lila_shop.backend.entity.Product;
+import com.lila_shop.backend.entity.ProductMedia;
+import com.lila_shop.backend.entity.ProductVariant;
+import com.lila_shop.backend.entity.User;
+import com.lila_shop.backend.enums.ProductStatus;
+import com.lila_shop.backend.mapper.ProductMapperImpl;
+import com.lila_shop.backend.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Số câu SQL khi map danh sách sản phẩm không được tăng theo số sản phẩm:
+// 1 query products (join category/promotion/inventory/defaultMedia) + media + variants + tên user
+@DataJpaTest(properties = {
+    "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "spring.jpa.properties.hibernate.auto_quote_keyword=true"
+})
+class ProductResponseAssemblerTest {
+    private static final long LIST_STATEMENTS = 4;
+
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Product.class)
+    @EnableJpaRepositories(basePackageClasses = ProductRepository.class)
+    @Import({ProductResponseAssembler.class, ProductMapperImpl.class})
+    static class Config {}
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductResponseAssembler productResponseAssembler;
+
+    @MockBean
+    EffectivePriceStore effectivePriceStore;
+
+    Statistics statistics;
+    Category category;
+    User submitter;
+    User approver;
+    int created;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        category = entityManager.persist(Category.builder()
+                .id("cat-1")
+                .name("Son môi")
+                .status(true)
+                .build());
+        submitter = entityManager.persist(User.builder().fullName("Nhân viên").email("staff@lila.vn").build());
+        approver = entityManager.persist(User.builder().fullName("Quản trị").email("admin@lila.vn").build());
+    }
+
+    @Test
+    void activeProductsUseFixedStatementCount() {
+        assertFixedStatementCount(() -> productResponseAssembler.toResponses(
+                productRepository.findByStatus(ProductStatus.APPROVED)));
+    }
+
+    @Test
+    void productsByIdUseFixedStatementCount() {
+        assertFixedStatementCount(() -> productResponseAssembler.toResponses(
+                productRepository.findAllWithRelationsByIdIn(productIds())));
+    }
+
+    private void assertFixedStatementCount(Supplier<List<ProductResponse>> listing) {
+        createProducts(1);
+        assertThat(countStatements(listing, 1)).isEqualTo(LIST_STATEMENTS);
+
+        createProducts(24);
+        assertThat(countStatements(listing, 25)).isEqualTo(LIST_STATEMENTS);
+    }
+
+    private long countStatements(Supplier<List<ProductResponse>> listing, int expectedProducts) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<ProductResponse> responses = listing.get();
+
+        long statements = statistics.getPrepareStatementCount();
+        assertThat(responses).hasSize(expectedProducts);
+        assertThat(responses).allSatisfy(response -> {
+            assertThat(response.getCategoryName()).isEqualTo("Son môi");
+            assertThat(response.getSubmittedByName()).isEqualTo("Nhân viên");
+            assertThat(response.getApprovedByName()).isEqualTo("Quản trị");
+            assertThat(response.getMediaUrls()).hasSize(2);
+            assertThat(response.getVariants()).hasSize(2);
+            assertThat(response.getStockQuantity()).isEqualTo(10);
+        });
+        return statements;
+    }
+
+    private List<String> productIds() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < created; i++) {
+            ids.add("product-" + i);
+        }
+        return ids;
+    }
+
+    private void createProducts(int count) {
+        // Các entity đã bị clear sau lần đếm trước: lấy lại bản managed
+        Category managedCategory = entityManager.find(Category.class, category.getId());
+        User managedSubmitter = entityManager.find(User.class, submitter.getId());
+        User managedApprover = entityManager.find(User.class, approver.getId());
+
+        for (int i = 0; i < count; i++) {
+            String id = "product-" + created++;
+            Product product = entityManager.persist(Product.builder()
+                    .id(id)
+                    .name("Sản phẩm " + id)
+                    .unitPrice(100_000.0)
+                    .tax(0.1)
+                    .price(110_000.0)
+                    .status(ProductStatus.APPROVED)
+                    .category(managedCategory)
+                    .submittedBy(managedSubmitter)
+                    .approvedBy(managedApprover)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+
+            for (int order = 0; order < 2; order++) {
+                entityManager.persist(ProductMedia.builder()
+                        .mediaUrl("https://cdn.lila.vn/" + id + "/" + order + ".jpg")
+                        .mediaType("IMAGE")
+                        .displayOrder(order)
+                        .product(product)
+                        .build());
+                entityManager.persist(ProductVariant.builder()
+                        .product(product)
+                        .name("Màu " + order)
+                        .price(110_000.0)
+                        .stockQuantity(5)
+                        .isDefault(order == 0)
+                        .build());
+            }
+            entityManager.persist(Inventory.builder()
+                    .product(product)
+                    .stockQuantity(10)
+                    .lastUpdated(LocalDate.now())
+                    .build());
+        }
+    }
+}